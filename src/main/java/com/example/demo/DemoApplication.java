@@ -4,11 +4,13 @@ import io.github.cdimascio.dotenv.Dotenv;
 import org.springframework.ai.autoconfigure.openai.OpenAiAutoConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 /**
  * Main Spring Boot Application
  * Excludes OpenAiAutoConfiguration to prevent auto-config of unnecessary beans
  * (image, audio, moderation, etc.). We manually configure only Chat via SpringAiConfig.
+ * Startup steps are buffered for /actuator/startup.
  */
 @SpringBootApplication(exclude = {OpenAiAutoConfiguration.class})
 public class DemoApplication {
@@ -30,6 +32,8 @@ public class DemoApplication {
             System.err.println("⚠️ Warning: Could not load .env file - " + e.getMessage());
         }
         
-        SpringApplication.run(DemoApplication.class, args);
+        SpringApplication app = new SpringApplication(DemoApplication.class);
+        app.setApplicationStartup(new BufferingApplicationStartup(4096));
+        app.run(args);
     }
 }
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import com.example.demo.service.RequestTimings;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Stamps RAG API requests with their arrival time, first thing in the filter chain,
+ * so RequestTimings can report the wait before the pipeline starts
+ * (body parsing, multipart spooling, validation).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestReceivedFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/rag/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        request.setAttribute(RequestTimings.RECEIVED_AT_ATTRIBUTE, System.nanoTime());
+        chain.doFilter(request, response);
+    }
+}
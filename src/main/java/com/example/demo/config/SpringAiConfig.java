@@ -6,6 +6,7 @@ import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
@@ -18,8 +19,11 @@ import java.time.Duration;
  * Spring AI Configuration for OpenRouter integration.
  * Configures OpenAI-compatible API client for CHAT ONLY with proper timeout.
  * Embedding is handled by Hugging Face service.
+ * All beans are lazy: the HTTP clients, OpenAiApi and ChatModel are only built
+ * on the first chat call, keeping them off the startup path.
  */
 @Configuration
+@Lazy
 public class SpringAiConfig {
 
     @Value("${spring.ai.openai.api-key}")
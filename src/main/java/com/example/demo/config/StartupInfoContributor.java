@@ -0,0 +1,57 @@
+package com.example.demo.config;
+
+import com.example.demo.service.IndexPreloader;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports ready-to-serve time and the startup optimizations in effect under
+ * "startup" in /actuator/info. Step-by-step timings are at /actuator/startup.
+ */
+@Component
+public class StartupInfoContributor implements InfoContributor {
+
+    private final IndexPreloader indexPreloader;
+    private final Environment environment;
+
+    private volatile long contextReadyMillis = -1;
+    private volatile long jvmReadyMillis = -1;
+
+    public StartupInfoContributor(IndexPreloader indexPreloader, Environment environment) {
+        this.indexPreloader = indexPreloader;
+        this.environment = environment;
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        if (event.getTimeTaken() != null) {
+            contextReadyMillis = event.getTimeTaken().toMillis();
+        }
+        jvmReadyMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println("🚀 Ready to serve in " + jvmReadyMillis + "ms since JVM start"
+                + " (application context: " + contextReadyMillis + "ms)");
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        Map<String, Object> startup = new LinkedHashMap<>();
+        startup.put("jvmReadyMillis", jvmReadyMillis);
+        startup.put("contextReadyMillis", contextReadyMillis);
+        startup.put("lazyInitialization", environment.getProperty("spring.main.lazy-initialization", Boolean.class, false));
+        startup.put("aot", AotDetector.useGeneratedArtifacts());
+        startup.put("cds", runtime.getInputArguments().stream().anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile")));
+        startup.put("indexPreload", indexPreloader.describe());
+        builder.withDetail("startup", startup);
+    }
+}
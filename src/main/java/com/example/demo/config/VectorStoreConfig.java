@@ -1,27 +1,142 @@
 package com.example.demo.config;
 
+import com.example.demo.service.ChunkPayloadStore;
+import com.example.demo.service.EmbeddingModelRegistry;
+import com.example.demo.service.FlatVectorIndex;
 import com.example.demo.service.HuggingFaceEmbeddingModelAdapter;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
-import org.springframework.ai.vectorstore.VectorStore;
+import com.example.demo.service.InMemoryVectorStore;
+import com.example.demo.service.IvfPqVectorIndex;
+import com.example.demo.service.SearchableVectorStore;
+import com.example.demo.service.ShardedVectorStore;
+import com.example.demo.service.VectorIndex;
+import com.example.demo.service.VectorSpill;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Spring AI Vector Store Configuration.
- * Uses SimpleVectorStore with Hugging Face embeddings via adapter.
+ * Uses InMemoryVectorStore with Hugging Face embeddings via adapter,
+ * optionally sharded across cluster nodes.
  */
 @Configuration
 public class VectorStoreConfig {
 
+    @Value("${rag.vector-store.type:flat}")
+    private String indexType;
+
+    @Value("${rag.ivfpq.lists:0}")
+    private int ivfLists;
+
+    @Value("${rag.ivfpq.sub-quantizers:32}")
+    private int ivfSubQuantizers;
+
+    @Value("${rag.ivfpq.nprobe:8}")
+    private int ivfNprobe;
+
+    @Value("${rag.ivfpq.train-min-vectors:10000}")
+    private int ivfTrainMinVectors;
+
+    @Value("${rag.ivfpq.max-train-sample:50000}")
+    private int ivfMaxTrainSample;
+
+    @Value("${rag.ivfpq.iterations:15}")
+    private int ivfIterations;
+
+    @Value("${rag.ivfpq.full-precision:none}")
+    private String ivfFullPrecision;
+
+    @Value("${rag.payload.storage:heap}")
+    private String payloadStorage;
+
+    @Value("${rag.payload.block-bytes:65536}")
+    private int payloadBlockBytes;
+
+    @Value("${rag.payload.hot-blocks:64}")
+    private int payloadHotBlocks;
+
+    @Value("${rag.payload.dir:${java.io.tmpdir}}")
+    private String payloadDir;
+
+    @Value("${rag.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    @Value("${rag.cluster.node-id:0}")
+    private int nodeId;
+
+    @Value("${rag.cluster.nodes:}")
+    private String clusterNodes;
+
+    @Value("${rag.cluster.shard-timeout-ms:2000}")
+    private long shardTimeoutMs;
+
     /**
-     * Create SimpleVectorStore with Hugging Face embedding model adapter.
-     * SimpleVectorStore is an in-memory vector store suitable for development/demo.
+     * Create InMemoryVectorStore with Hugging Face embedding model adapter.
+     * Like SimpleVectorStore it keeps everything in the JVM heap, but it can be
+     * exported/imported as a binary snapshot (see IndexSnapshotService) and cleared.
+     * In cluster mode this is the shard owned by this node.
+     * With rag.vector-store.type=ivfpq vectors are product-quantized once
+     * rag.ivfpq.train-min-vectors are stored (tens of bytes per vector instead of 4 * dim).
+     * Chunk text and metadata are kept compressed per rag.payload.storage (heap|offheap|file).
      * For production, consider using PgVectorStore, Neo4jVectorStore, or PineconeVectorStore.
      */
+    @Bean(destroyMethod = "close")
+    public InMemoryVectorStore localVectorStore(HuggingFaceEmbeddingModelAdapter embeddingModel,
+                                                EmbeddingModelRegistry modelRegistry) {
+        System.out.println("🗄️ Initializing InMemoryVectorStore with HuggingFace embeddings");
+        System.out.println("   📏 Dimension: " + (modelRegistry.isProbed() ? modelRegistry.getDimension() : "not probed yet"));
+        VectorIndex index;
+        if ("ivfpq".equalsIgnoreCase(indexType)) {
+            System.out.println("   🧮 Index: IVF-PQ (m=" + ivfSubQuantizers + ", nprobe=" + ivfNprobe
+                    + ", trains at " + ivfTrainMinVectors + " vectors)");
+            // Optional full-precision copy after training, for retraining and lossless export
+            VectorSpill fullPrecision = null;
+            if (!"none".equalsIgnoreCase(ivfFullPrecision.trim())) {
+                ChunkPayloadStore.Storage spill = ChunkPayloadStore.Storage.valueOf(ivfFullPrecision.trim().toUpperCase(Locale.ROOT));
+                System.out.println("   💾 Full-precision vectors kept after training: " + spill.name().toLowerCase(Locale.ROOT));
+                fullPrecision = new VectorSpill(spill, Path.of(payloadDir));
+            }
+            index = new IvfPqVectorIndex(ivfLists, ivfSubQuantizers, ivfNprobe, ivfTrainMinVectors,
+                    ivfMaxTrainSample, ivfIterations, fullPrecision);
+        } else {
+            System.out.println("   🧮 Index: flat (exact)");
+            index = new FlatVectorIndex();
+        }
+        ChunkPayloadStore.Storage storage = ChunkPayloadStore.Storage.valueOf(payloadStorage.trim().toUpperCase(Locale.ROOT));
+        System.out.println("   📦 Chunk payloads: " + storage.name().toLowerCase(Locale.ROOT) + ", deflate blocks of "
+                + payloadBlockBytes + " bytes, hot cache " + payloadHotBlocks + " blocks");
+        ChunkPayloadStore payloads = new ChunkPayloadStore(storage, payloadBlockBytes, payloadHotBlocks, Path.of(payloadDir));
+        return new InMemoryVectorStore(embeddingModel, modelRegistry, index, payloads);
+    }
+
+    /**
+     * Store used by the RAG pipeline: the local store, or in cluster mode a
+     * ShardedVectorStore that hash-partitions chunks across rag.cluster.nodes.
+     */
     @Bean
-    public VectorStore vectorStore(HuggingFaceEmbeddingModelAdapter embeddingModel) {
-        System.out.println("🗄️ Initializing SimpleVectorStore with HuggingFace embeddings");
-        System.out.println("   📏 Dimension: " + embeddingModel.dimensions());
-        return new SimpleVectorStore(embeddingModel);
+    @Primary
+    public SearchableVectorStore vectorStore(InMemoryVectorStore localVectorStore,
+                                             HuggingFaceEmbeddingModelAdapter embeddingModel,
+                                             EmbeddingModelRegistry modelRegistry) {
+        if (!clusterEnabled) {
+            return localVectorStore;
+        }
+        List<String> nodes = Arrays.stream(clusterNodes.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .map(node -> node.endsWith("/") ? node.substring(0, node.length() - 1) : node)
+                .toList();
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException("rag.cluster.enabled=true requires rag.cluster.nodes");
+        }
+        System.out.println("🌐 Cluster mode: node " + nodeId + " of " + nodes.size() + " " + nodes);
+        System.out.println("   ⏱️  Shard timeout: " + shardTimeoutMs + "ms");
+        return new ShardedVectorStore(localVectorStore, embeddingModel, modelRegistry, nodeId, nodes, shardTimeoutMs);
     }
 }
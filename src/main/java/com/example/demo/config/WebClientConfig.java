@@ -5,6 +5,7 @@ import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.netty.http.client.HttpClient;
@@ -17,8 +18,10 @@ import java.util.concurrent.TimeUnit;
  * This configuration is applied globally to all WebClient instances used by Spring AI.
  * Timeout: 120 seconds for PDF processing and large context queries.
  * Authorization is handled by Spring AI OpenAiApi automatically.
+ * Lazy: the Netty client is only created when OpenAiApi is first needed.
  */
 @Configuration
+@Lazy
 public class WebClientConfig {
 
     /**
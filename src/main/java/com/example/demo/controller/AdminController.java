@@ -0,0 +1,129 @@
+package com.example.demo.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.example.demo.model.LlmCacheStats;
+import com.example.demo.model.PrefetchStats;
+import com.example.demo.model.SnapshotResponse;
+import com.example.demo.service.EmbeddingModelRegistry;
+import com.example.demo.service.InMemoryVectorStore;
+import com.example.demo.service.IndexSnapshotService;
+import com.example.demo.service.LlmResponseCache;
+import com.example.demo.service.QueryPrefetchService;
+import com.example.demo.service.TimingAggregator;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admin endpoints for index maintenance.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final IndexSnapshotService snapshotService;
+    private final EmbeddingModelRegistry modelRegistry;
+    private final LlmResponseCache responseCache;
+    private final InMemoryVectorStore localStore;
+    private final QueryPrefetchService prefetchService;
+    private final TimingAggregator timingAggregator;
+
+    public AdminController(IndexSnapshotService snapshotService, EmbeddingModelRegistry modelRegistry,
+                           LlmResponseCache responseCache, InMemoryVectorStore localStore,
+                           QueryPrefetchService prefetchService, TimingAggregator timingAggregator) {
+        this.snapshotService = snapshotService;
+        this.modelRegistry = modelRegistry;
+        this.responseCache = responseCache;
+        this.localStore = localStore;
+        this.prefetchService = prefetchService;
+        this.timingAggregator = timingAggregator;
+    }
+
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSnapshot() {
+        StreamingResponseBody body = snapshotService::exportSnapshot;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rag-index.snap\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @PostMapping(value = "/snapshot", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public SnapshotResponse importSnapshot(@RequestPart("file") MultipartFile file) throws Exception {
+        long t0 = System.currentTimeMillis();
+        int vectors;
+        try (InputStream in = file.getInputStream()) {
+            vectors = snapshotService.importSnapshot(in, file.getSize());
+        }
+        long dt = System.currentTimeMillis() - t0;
+        EmbeddingModelRegistry.ModelSpec spec = modelRegistry.getSpec();
+        return new SnapshotResponse(spec.model(), spec.dimension(), vectors, dt);
+    }
+
+    @GetMapping("/embedding-model")
+    public EmbeddingModelRegistry.ModelSpec embeddingModel() {
+        return modelRegistry.getSpec();
+    }
+
+    @GetMapping("/llm-cache")
+    public LlmCacheStats llmCacheStats() {
+        return responseCache.getStats();
+    }
+
+    @DeleteMapping("/llm-cache")
+    public void clearLlmCache() {
+        responseCache.clear();
+    }
+
+    @GetMapping("/prefetch")
+    public PrefetchStats prefetchStats() {
+        return prefetchService.getStats();
+    }
+
+    /**
+     * Rolling latency aggregate (mean, p50, p95, max per pipeline step) of recent requests.
+     */
+    @GetMapping("/timings")
+    public Map<String, Object> timings() {
+        return timingAggregator.summary();
+    }
+
+    @DeleteMapping("/timings")
+    public void clearTimings() {
+        timingAggregator.clear();
+    }
+
+    @GetMapping("/index")
+    public Map<String, Object> indexStatus() {
+        return localStore.describeIndex();
+    }
+
+    /**
+     * Train, or retrain, the IVF-PQ index in the background; searches keep using the
+     * current codes until the new ones are swapped in. Poll GET /index for progress.
+     * 409 if the index is flat, empty, already training, or has no full-precision vectors
+     * to train on (trained with rag.ivfpq.full-precision=none, or loaded from a lossy snapshot).
+     */
+    @PostMapping("/index/train")
+    public ResponseEntity<Map<String, Object>> trainIndex() {
+        if (!localStore.trainIndexAsync()) {
+            Map<String, Object> body = new LinkedHashMap<>(localStore.describeIndex());
+            String error;
+            if (Boolean.TRUE.equals(body.get("lossyVectors"))) {
+                error = "Index holds only lossy PQ reconstructions (trained with rag.ivfpq.full-precision=none, "
+                        + "or loaded from a lossy snapshot); clear and reindex to train on the original embeddings";
+            } else {
+                error = "Index is not IVF-PQ, is empty, or is already training";
+            }
+            body.put("error", error);
+            return ResponseEntity.status(409).body(body);
+        }
+        return ResponseEntity.accepted().body(localStore.describeIndex());
+    }
+}
@@ -1,13 +1,25 @@
 package com.example.demo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import com.example.demo.model.AskRequest;
 import com.example.demo.model.AskResponse;
+import com.example.demo.model.BatchAskRequest;
 import com.example.demo.model.ReindexResponse;
 import com.example.demo.service.RagService;
+import com.example.demo.service.RequestTimings;
+import com.example.demo.service.TimingAggregator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST API endpoints for RAG operations.
@@ -18,27 +30,103 @@ import com.example.demo.service.RagService;
 public class ChatController {
 
     private final RagService ragService;
+    private final ObjectMapper objectMapper;
+    private final TimingAggregator timingAggregator;
+
+    @Value("${rag.batch.timeout-ms:1800000}")
+    private long batchTimeoutMs;
 
-    public ChatController(RagService ragService) {
+    public ChatController(RagService ragService, ObjectMapper objectMapper, TimingAggregator timingAggregator) {
         this.ragService = ragService;
+        this.objectMapper = objectMapper;
+        this.timingAggregator = timingAggregator;
     }
 
+    /**
+     * @param timing opt-in: include the per-step TimingBreakdown in the response
+     */
     @PostMapping(value = "/reindex", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ReindexResponse reindex(@RequestPart("file") MultipartFile file) throws Exception {
+    public ReindexResponse reindex(@RequestPart("file") MultipartFile file,
+                                   @RequestParam(value = "timing", defaultValue = "false") boolean timing,
+                                   HttpServletRequest request) throws Exception {
         long t0 = System.currentTimeMillis();
-        int chunks = ragService.indexPdf(file);
+        RequestTimings timings = RequestTimings.begin(receivedAt(request), timing);
+        int chunks;
+        try {
+            chunks = ragService.indexPdf(file);
+        } finally {
+            timingAggregator.record("reindex", timings.finish());
+        }
         int vectors = ragService.getStoreSize();
         long dt = System.currentTimeMillis() - t0;
-        return new ReindexResponse(chunks, vectors, dt);
+        ReindexResponse response = new ReindexResponse(chunks, vectors, dt);
+        if (timing) {
+            response.setTiming(timings.getBreakdown());
+        }
+        return response;
     }
 
     @PostMapping("/ask")
-    public AskResponse ask(@Valid @RequestBody AskRequest req) throws Exception {
-        return ragService.ask(req.getQuestion());
+    public AskResponse ask(@Valid @RequestBody AskRequest req, HttpServletRequest request) throws Exception {
+        RequestTimings timings = RequestTimings.begin(receivedAt(request), req.isTiming());
+        AskResponse response;
+        try {
+            response = ragService.ask(req.getQuestion());
+        } finally {
+            timingAggregator.record("ask", timings.finish());
+        }
+        if (timings.getBreakdown().isPartialResults()) {
+            response.setPartialResults(true);
+        }
+        if (req.isTiming()) {
+            response.setTiming(timings.getBreakdown());
+        }
+        return response;
+    }
+
+    /**
+     * Answer many questions; streams one JSON object per line (NDJSON) as each answer completes.
+     */
+    @PostMapping(value = "/ask/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter askBatch(@Valid @RequestBody BatchAskRequest req, HttpServletRequest request) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        CompletableFuture<Void> batch = ragService.askBatch(req.getQuestions(), receivedAt(request), result -> {
+            try {
+                // One send per line, so concurrent completions never interleave
+                emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.APPLICATION_NDJSON);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // Timeout or client disconnect: stop the LLM calls that have not started yet
+        emitter.onTimeout(() -> batch.cancel(false));
+        emitter.onError(error -> batch.cancel(false));
+        emitter.onCompletion(() -> batch.cancel(false));
+        batch.whenComplete((done, error) -> {
+            if (error != null) {
+                emitter.completeWithError(error);
+            } else {
+                emitter.complete();
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Speculative retrieval for a partial question, called by the UI while the user types.
+     */
+    @PostMapping("/prefetch")
+    public Map<String, Boolean> prefetch(@Valid @RequestBody AskRequest req) {
+        return Map.of("prefetched", ragService.prefetch(req.getQuestion()));
     }
 
     @DeleteMapping("/clear")
     public void clearIndex() {
         ragService.clearIndex();
     }
+
+    private static long receivedAt(HttpServletRequest request) {
+        Object receivedAt = request.getAttribute(RequestTimings.RECEIVED_AT_ATTRIBUTE);
+        return receivedAt instanceof Long nanos ? nanos : System.nanoTime();
+    }
 }
@@ -0,0 +1,69 @@
+package com.example.demo.controller;
+
+import org.springframework.ai.document.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import com.example.demo.model.ShardAddRequest;
+import com.example.demo.model.ShardDocument;
+import com.example.demo.model.ShardSearchRequest;
+import com.example.demo.service.EmbeddingModelRegistry;
+import com.example.demo.service.InMemoryVectorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node-to-node endpoints serving this node's shard in cluster mode.
+ * Called by ShardedVectorStore on the node that received the user request.
+ */
+@RestController
+@RequestMapping("/api/cluster/shard")
+@ConditionalOnProperty(name = "rag.cluster.enabled", havingValue = "true")
+public class ClusterShardController {
+
+    private final InMemoryVectorStore localShard;
+    private final EmbeddingModelRegistry modelRegistry;
+
+    public ClusterShardController(InMemoryVectorStore localShard, EmbeddingModelRegistry modelRegistry) {
+        this.localShard = localShard;
+        this.modelRegistry = modelRegistry;
+    }
+
+    @PostMapping("/documents")
+    public void add(@RequestBody ShardAddRequest request) {
+        modelRegistry.checkCompatible(request.getModel(), request.getDimension());
+        List<Document> documents = new ArrayList<>(request.getDocuments().size());
+        List<float[]> vectors = new ArrayList<>(request.getDocuments().size());
+        for (ShardDocument doc : request.getDocuments()) {
+            documents.add(new Document(doc.getId(), doc.getContent(), doc.getMetadata()));
+            vectors.add(doc.getEmbedding());
+        }
+        localShard.addEmbedded(documents, vectors);
+    }
+
+    @PostMapping("/search")
+    public List<ShardDocument> search(@RequestBody ShardSearchRequest request) {
+        List<ShardDocument> hits = new ArrayList<>();
+        for (Document doc : localShard.similaritySearch(request.getVector(), request.getTopK(), request.getThreshold())) {
+            Object score = doc.getMetadata().get("score");
+            hits.add(new ShardDocument(doc.getId(), doc.getContent(), doc.getMetadata(), null,
+                    score instanceof Number ? ((Number) score).doubleValue() : 0.0));
+        }
+        return hits;
+    }
+
+    @PostMapping("/delete")
+    public boolean delete(@RequestBody List<String> ids) {
+        return localShard.delete(ids).orElse(false);
+    }
+
+    @GetMapping("/size")
+    public int size() {
+        return localShard.size();
+    }
+
+    @DeleteMapping
+    public void clear() {
+        localShard.clear();
+    }
+}
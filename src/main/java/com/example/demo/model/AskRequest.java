@@ -7,6 +7,9 @@ public class AskRequest {
     @NotBlank
     private String question;
 
+    // Opt-in: include a TimingBreakdown in the response
+    private boolean timing;
+
     public AskRequest() { }
 
     public AskRequest(String question) {
@@ -19,4 +22,10 @@ public class AskRequest {
     public void setQuestion(String question) {
         this.question = question;
     }
+    public boolean isTiming() {
+        return timing;
+    }
+    public void setTiming(boolean timing) {
+        this.timing = timing;
+    }
 }
\ No newline at end of file
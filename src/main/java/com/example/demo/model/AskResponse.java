@@ -1,10 +1,16 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class AskResponse {
     private String answer;
     private List<SourceScore> sources;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private TimingBreakdown timing;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean partialResults;
 
     public AskResponse(String answer, List<SourceScore> sources) {
         this.answer = answer;
@@ -12,6 +18,13 @@ public class AskResponse {
     }
     public String getAnswer() { return answer; }
     public List<SourceScore> getSources() { return sources; }
+    public TimingBreakdown getTiming() { return timing; }
+    public void setTiming(TimingBreakdown timing) { this.timing = timing; }
+    /**
+     * True when a cluster shard did not answer the search in time; absent otherwise.
+     */
+    public Boolean getPartialResults() { return partialResults; }
+    public void setPartialResults(Boolean partialResults) { this.partialResults = partialResults; }
 
     public static class SourceScore {
         private int chunkId;
@@ -0,0 +1,31 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One NDJSON line of /api/rag/ask/batch, emitted as soon as its LLM call completes.
+ * index is the position of the question in the request; error is set instead of answer on failure.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchAnswer {
+    private int index;
+    private String question;
+    private String answer;
+    private List<AskResponse.SourceScore> sources;
+    private String error;
+    private long millis;
+
+    public BatchAnswer(int index, String question, String answer, List<AskResponse.SourceScore> sources,
+                       String error, long millis) {
+        this.index = index; this.question = question; this.answer = answer; this.sources = sources;
+        this.error = error; this.millis = millis;
+    }
+    public int getIndex() { return index; }
+    public String getQuestion() { return question; }
+    public String getAnswer() { return answer; }
+    public List<AskResponse.SourceScore> getSources() { return sources; }
+    public String getError() { return error; }
+    public long getMillis() { return millis; }
+}
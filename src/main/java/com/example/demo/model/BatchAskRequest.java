@@ -0,0 +1,25 @@
+package com.example.demo.model;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class BatchAskRequest {
+
+    @NotEmpty
+    private List<@NotBlank String> questions;
+
+    public BatchAskRequest() { }
+
+    public BatchAskRequest(List<String> questions) {
+        this.questions = questions;
+    }
+
+    public List<String> getQuestions() {
+        return questions;
+    }
+    public void setQuestions(List<String> questions) {
+        this.questions = questions;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.model;
+
+public class LlmCacheStats {
+    private boolean enabled;
+    private int entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRatio;
+    private double savedPromptTokenRatio;
+    private long providerPromptTokens;
+    private long providerCalls;
+    private long latencySavedMillis;
+    public LlmCacheStats(boolean enabled, int entries, long hits, long misses, long evictions,
+                         double hitRatio, double savedPromptTokenRatio, long providerPromptTokens,
+                         long providerCalls, long latencySavedMillis) {
+        this.enabled = enabled; this.entries = entries; this.hits = hits; this.misses = misses;
+        this.evictions = evictions; this.hitRatio = hitRatio; this.savedPromptTokenRatio = savedPromptTokenRatio;
+        this.providerPromptTokens = providerPromptTokens; this.providerCalls = providerCalls;
+        this.latencySavedMillis = latencySavedMillis;
+    }
+    public boolean isEnabled() { return enabled; }
+    public int getEntries() { return entries; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public double getHitRatio() { return hitRatio; }
+    public double getSavedPromptTokenRatio() { return savedPromptTokenRatio; }
+    public long getProviderPromptTokens() { return providerPromptTokens; }
+    public long getProviderCalls() { return providerCalls; }
+    public long getLatencySavedMillis() { return latencySavedMillis; }
+}
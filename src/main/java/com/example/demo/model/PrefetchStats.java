@@ -0,0 +1,28 @@
+package com.example.demo.model;
+
+public class PrefetchStats {
+    private boolean enabled;
+    private int entries;
+    private long prefetches;
+    private long exactHits;
+    private long nearHits;
+    private long misses;
+    private double hitRatio;
+    private long latencySavedMillis;
+    private double avgLatencySavedMillis;
+    public PrefetchStats(boolean enabled, int entries, long prefetches, long exactHits, long nearHits, long misses,
+                         double hitRatio, long latencySavedMillis, double avgLatencySavedMillis) {
+        this.enabled = enabled; this.entries = entries; this.prefetches = prefetches; this.exactHits = exactHits;
+        this.nearHits = nearHits; this.misses = misses; this.hitRatio = hitRatio;
+        this.latencySavedMillis = latencySavedMillis; this.avgLatencySavedMillis = avgLatencySavedMillis;
+    }
+    public boolean isEnabled() { return enabled; }
+    public int getEntries() { return entries; }
+    public long getPrefetches() { return prefetches; }
+    public long getExactHits() { return exactHits; }
+    public long getNearHits() { return nearHits; }
+    public long getMisses() { return misses; }
+    public double getHitRatio() { return hitRatio; }
+    public long getLatencySavedMillis() { return latencySavedMillis; }
+    public double getAvgLatencySavedMillis() { return avgLatencySavedMillis; }
+}
@@ -1,13 +1,19 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class ReindexResponse {
     private int chunks;
     private int vectors;
     private long millis;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private TimingBreakdown timing;
     public ReindexResponse(int chunks, int vectors, long millis) {
         this.chunks = chunks; this.vectors = vectors; this.millis = millis;
     }
     public int getChunks() { return chunks; }
     public int getVectors() { return vectors; }
     public long getMillis() { return millis; }
+    public TimingBreakdown getTiming() { return timing; }
+    public void setTiming(TimingBreakdown timing) { this.timing = timing; }
 }
@@ -0,0 +1,25 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+public class ShardAddRequest {
+
+    private String model;
+    private int dimension;
+    private List<ShardDocument> documents;
+
+    public ShardAddRequest() { }
+
+    public ShardAddRequest(String model, int dimension, List<ShardDocument> documents) {
+        this.model = model;
+        this.dimension = dimension;
+        this.documents = documents;
+    }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+    public int getDimension() { return dimension; }
+    public void setDimension(int dimension) { this.dimension = dimension; }
+    public List<ShardDocument> getDocuments() { return documents; }
+    public void setDocuments(List<ShardDocument> documents) { this.documents = documents; }
+}
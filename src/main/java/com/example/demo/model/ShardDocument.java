@@ -0,0 +1,37 @@
+package com.example.demo.model;
+
+import java.util.Map;
+
+/**
+ * Chunk as exchanged between cluster nodes: with its vector when added to a shard,
+ * with its score when returned from a shard search.
+ */
+public class ShardDocument {
+
+    private String id;
+    private String content;
+    private Map<String, Object> metadata;
+    private float[] embedding;
+    private double score;
+
+    public ShardDocument() { }
+
+    public ShardDocument(String id, String content, Map<String, Object> metadata, float[] embedding, double score) {
+        this.id = id;
+        this.content = content;
+        this.metadata = metadata;
+        this.embedding = embedding;
+        this.score = score;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+    public Map<String, Object> getMetadata() { return metadata; }
+    public void setMetadata(Map<String, Object> metadata) { this.metadata = metadata; }
+    public float[] getEmbedding() { return embedding; }
+    public void setEmbedding(float[] embedding) { this.embedding = embedding; }
+    public double getScore() { return score; }
+    public void setScore(double score) { this.score = score; }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.model;
+
+public class ShardSearchRequest {
+
+    private float[] vector;
+    private int topK;
+    private double threshold;
+
+    public ShardSearchRequest() { }
+
+    public ShardSearchRequest(float[] vector, int topK, double threshold) {
+        this.vector = vector;
+        this.topK = topK;
+        this.threshold = threshold;
+    }
+
+    public float[] getVector() { return vector; }
+    public void setVector(float[] vector) { this.vector = vector; }
+    public int getTopK() { return topK; }
+    public void setTopK(int topK) { this.topK = topK; }
+    public double getThreshold() { return threshold; }
+    public void setThreshold(double threshold) { this.threshold = threshold; }
+}
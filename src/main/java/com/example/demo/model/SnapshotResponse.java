@@ -0,0 +1,15 @@
+package com.example.demo.model;
+
+public class SnapshotResponse {
+    private String model;
+    private int dimension;
+    private int vectors;
+    private long millis;
+    public SnapshotResponse(String model, int dimension, int vectors, long millis) {
+        this.model = model; this.dimension = dimension; this.vectors = vectors; this.millis = millis;
+    }
+    public String getModel() { return model; }
+    public int getDimension() { return dimension; }
+    public int getVectors() { return vectors; }
+    public long getMillis() { return millis; }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Per-request latency breakdown, returned when the client opts in with "timing".
+ * Only the steps the request actually went through are set; times are in milliseconds.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TimingBreakdown {
+    private Double queueWaitMillis;
+    private Double extractMillis;
+    private Double chunkMillis;
+    private Double embedMillis;
+    private Integer embedCalls;
+    private Integer embedRetries;
+    private Double searchMillis;
+    private Integer candidatesScanned;
+    private Integer shardsAnswered;
+    private Integer shardsTotal;
+    private Double indexMillis;
+    private Boolean prefetchHit;
+    private Integer contextTokens;
+    private Boolean cacheHit;
+    private Double llmTtftMillis;
+    private Double llmMillis;
+    private Double totalMillis;
+
+    public TimingBreakdown() { }
+
+    public Double getQueueWaitMillis() { return queueWaitMillis; }
+    public void setQueueWaitMillis(Double queueWaitMillis) { this.queueWaitMillis = queueWaitMillis; }
+    public Double getExtractMillis() { return extractMillis; }
+    public void setExtractMillis(Double extractMillis) { this.extractMillis = extractMillis; }
+    public Double getChunkMillis() { return chunkMillis; }
+    public void setChunkMillis(Double chunkMillis) { this.chunkMillis = chunkMillis; }
+    public Double getEmbedMillis() { return embedMillis; }
+    public void setEmbedMillis(Double embedMillis) { this.embedMillis = embedMillis; }
+    public Integer getEmbedCalls() { return embedCalls; }
+    public void setEmbedCalls(Integer embedCalls) { this.embedCalls = embedCalls; }
+    public Integer getEmbedRetries() { return embedRetries; }
+    public void setEmbedRetries(Integer embedRetries) { this.embedRetries = embedRetries; }
+    public Double getSearchMillis() { return searchMillis; }
+    public void setSearchMillis(Double searchMillis) { this.searchMillis = searchMillis; }
+    public Integer getCandidatesScanned() { return candidatesScanned; }
+    public void setCandidatesScanned(Integer candidatesScanned) { this.candidatesScanned = candidatesScanned; }
+    public Integer getShardsAnswered() { return shardsAnswered; }
+    public void setShardsAnswered(Integer shardsAnswered) { this.shardsAnswered = shardsAnswered; }
+    public Integer getShardsTotal() { return shardsTotal; }
+    public void setShardsTotal(Integer shardsTotal) { this.shardsTotal = shardsTotal; }
+    /**
+     * Some shard missed its deadline or failed, so the results may be incomplete.
+     */
+    @JsonIgnore
+    public boolean isPartialResults() { return shardsAnswered != null && shardsAnswered < shardsTotal; }
+    public Double getIndexMillis() { return indexMillis; }
+    public void setIndexMillis(Double indexMillis) { this.indexMillis = indexMillis; }
+    public Boolean getPrefetchHit() { return prefetchHit; }
+    public void setPrefetchHit(Boolean prefetchHit) { this.prefetchHit = prefetchHit; }
+    public Integer getContextTokens() { return contextTokens; }
+    public void setContextTokens(Integer contextTokens) { this.contextTokens = contextTokens; }
+    public Boolean getCacheHit() { return cacheHit; }
+    public void setCacheHit(Boolean cacheHit) { this.cacheHit = cacheHit; }
+    public Double getLlmTtftMillis() { return llmTtftMillis; }
+    public void setLlmTtftMillis(Double llmTtftMillis) { this.llmTtftMillis = llmTtftMillis; }
+    public Double getLlmMillis() { return llmMillis; }
+    public void setLlmMillis(Double llmMillis) { this.llmMillis = llmMillis; }
+    public Double getTotalMillis() { return totalMillis; }
+    public void setTotalMillis(Double totalMillis) { this.totalMillis = totalMillis; }
+}
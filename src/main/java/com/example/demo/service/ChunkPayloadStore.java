@@ -0,0 +1,477 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Chunk text + metadata kept as deflate-compressed blocks instead of live Strings and HashMaps.
+ *
+ * Payloads are appended to an uncompressed tail block; once the tail reaches block-bytes it
+ * is compressed and sealed into heap byte[], direct (off-heap) ByteBuffers or a temp file.
+ * A payload is addressed by a handle (block id, index in block) and only decoded when read,
+ * i.e. for the top-K search results. Recently decoded blocks stay in a small LRU hot cache.
+ *
+ * Overwritten and deleted payloads are not reclaimed until clear(); they are counted as dead.
+ * Metadata goes through JSON, so values come back as JSON types (Integer/Long, Double, String,
+ * List, Map). Thread-safe: appends, seal and clear take the write side of an internal lock,
+ * reads (tail or sealed) the read side; the hot cache is additionally guarded by itself.
+ * Bulk readers (snapshot export) use a Cursor, which bypasses the hot cache.
+ */
+public class ChunkPayloadStore implements Closeable {
+
+    public enum Storage { HEAP, OFFHEAP, FILE }
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() { };
+
+    private final Storage storage;
+    private final int blockBytes;
+    private final int hotBlocks;
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Sealed blocks, indexed by block id
+    private final List<Block> blocks = new ArrayList<>();
+    private FileChannel channel;
+    private Path file;
+    private long fileSize;
+
+    // Open tail block (block id = blocks.size())
+    private final List<byte[]> tail = new ArrayList<>();
+    private int tailBytes;
+
+    // Decoded sealed blocks, access-ordered (guarded by itself)
+    private final LinkedHashMap<Integer, byte[]> hot = new LinkedHashMap<>(16, 0.75f, true);
+    private long hotHits;
+    private long hotMisses;
+
+    // Bumped by clear(): handles taken before it no longer point to the same payloads
+    private long epoch;
+    private boolean closed;
+
+    private long payloads;
+    private long deadPayloads;
+    private long rawBytes;
+    private long compressedBytes;
+
+    /**
+     * @param blockBytes uncompressed size at which the tail block is sealed
+     * @param hotBlocks decoded blocks kept in the LRU cache
+     * @param directory where FILE storage creates its temp file
+     */
+    public ChunkPayloadStore(Storage storage, int blockBytes, int hotBlocks, Path directory) {
+        this.storage = storage;
+        this.blockBytes = Math.max(4096, blockBytes);
+        this.hotBlocks = Math.max(1, hotBlocks);
+        this.directory = directory;
+    }
+
+    /**
+     * Store one chunk payload and return its handle.
+     */
+    public long append(String content, Map<String, Object> metadata) {
+        byte[] text = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] meta;
+        try {
+            meta = objectMapper.writeValueAsBytes(metadata != null ? metadata : Map.of());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Metadata is not serializable", e);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(4 + text.length + meta.length);
+        payload.putInt(text.length).put(text).put(meta);
+
+        lock.writeLock().lock();
+        try {
+            long handle = ((long) blocks.size() << 32) | tail.size();
+            tail.add(payload.array());
+            tailBytes += payload.capacity();
+            payloads++;
+            rawBytes += payload.capacity();
+            if (tailBytes >= blockBytes) {
+                seal();
+            }
+            return handle;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decode the payload behind a handle.
+     */
+    public Payload read(long handle) {
+        int blockId = (int) (handle >>> 32);
+        int index = (int) handle;
+        byte[] block;
+        lock.readLock().lock();
+        try {
+            if (blockId == blocks.size()) {
+                // Tail payloads are immutable arrays; the tail list only changes under the write lock
+                byte[] payload = tail.get(index);
+                return decode(payload, 0, payload.length);
+            }
+            block = decodedBlock(blockId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        ByteBuffer header = ByteBuffer.wrap(block);
+        int start = header.getInt(4 + index * 4);
+        int end = header.getInt(4 + (index + 1) * 4);
+        return decode(block, start, end - start);
+    }
+
+    /**
+     * Mark a payload as no longer referenced (overwritten or deleted row).
+     */
+    public void release(long handle) {
+        lock.writeLock().lock();
+        try {
+            deadPayloads++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            epoch++;
+            blocks.clear();
+            tail.clear();
+            tailBytes = 0;
+            synchronized (hot) {
+                hot.clear();
+                hotHits = 0;
+                hotMisses = 0;
+            }
+            payloads = 0;
+            deadPayloads = 0;
+            rawBytes = 0;
+            compressedBytes = 0;
+            if (channel != null) {
+                try {
+                    channel.truncate(0);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                fileSize = 0;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Heap held by payloads: heap blocks, the open tail and the hot cache.
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = tailBytes + 16L * tail.size() + 48L * blocks.size();
+            if (storage == Storage.HEAP) {
+                bytes += compressedBytes;
+            }
+            synchronized (hot) {
+                for (byte[] block : hot.values()) {
+                    bytes += 16 + block.length;
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            describeLocked(info);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return info;
+    }
+
+    private void describeLocked(Map<String, Object> info) {
+        info.put("storage", storage.name().toLowerCase(Locale.ROOT));
+        info.put("payloads", payloads);
+        info.put("deadPayloads", deadPayloads);
+        info.put("sealedBlocks", blocks.size());
+        info.put("rawBytes", rawBytes);
+        info.put("compressedBytes", compressedBytes);
+        long sealedRaw = rawBytes - tailBytes;
+        info.put("compressionRatio", compressedBytes == 0 ? 0.0 : Math.round(100.0 * sealedRaw / compressedBytes) / 100.0);
+        info.put("heapBytes", heapBytes());
+        info.put("offHeapBytes", storage == Storage.OFFHEAP ? compressedBytes : 0);
+        info.put("fileBytes", storage == Storage.FILE ? fileSize : 0);
+        synchronized (hot) {
+            info.put("hotBlocks", hot.size() + "/" + hotBlocks);
+            long lookups = hotHits + hotMisses;
+            info.put("hotHitRatio", lookups == 0 ? 0.0 : (double) hotHits / lookups);
+        }
+    }
+
+    /**
+     * Reader for many handles in block order, e.g. a whole-store export. It inflates
+     * each sealed block once into its own buffer, so it neither evicts nor pollutes the
+     * hot cache and holds at most one decoded block.
+     * Reads fail once the store has been cleared or closed after the cursor was opened.
+     */
+    public Cursor cursor() {
+        lock.readLock().lock();
+        try {
+            return new Cursor(epoch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * New empty store with the same storage, block size, hot cache size and directory.
+     */
+    public ChunkPayloadStore emptyCopy() {
+        return new ChunkPayloadStore(storage, blockBytes, hotBlocks, directory);
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not close payload file: " + e.getMessage());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compress the tail into a sealed block: [count][offsets x count+1][payloads].
+     * Caller holds the write lock.
+     */
+    private void seal() {
+        int count = tail.size();
+        int headerBytes = 4 + 4 * (count + 1);
+        ByteBuffer raw = ByteBuffer.allocate(headerBytes + tailBytes);
+        raw.putInt(count);
+        int offset = headerBytes;
+        for (byte[] payload : tail) {
+            raw.putInt(offset);
+            offset += payload.length;
+        }
+        raw.putInt(offset);
+        for (byte[] payload : tail) {
+            raw.put(payload);
+        }
+
+        byte[] compressed = deflate(raw.array());
+        Block block = switch (storage) {
+            case HEAP -> new Block(compressed, null, 0, compressed.length, raw.capacity());
+            case OFFHEAP -> {
+                ByteBuffer direct = ByteBuffer.allocateDirect(compressed.length);
+                direct.put(compressed).flip();
+                yield new Block(null, direct, 0, compressed.length, raw.capacity());
+            }
+            case FILE -> {
+                long position = writeToFile(compressed);
+                yield new Block(null, null, position, compressed.length, raw.capacity());
+            }
+        };
+        blocks.add(block);
+        compressedBytes += compressed.length;
+        tail.clear();
+        tailBytes = 0;
+    }
+
+    /**
+     * Caller holds the read lock, so blocks and the file cannot change underneath.
+     */
+    private byte[] decodedBlock(int blockId) {
+        synchronized (hot) {
+            byte[] cached = hot.get(blockId);
+            if (cached != null) {
+                hotHits++;
+                return cached;
+            }
+            hotMisses++;
+        }
+        Block block = blocks.get(blockId);
+        byte[] decoded = inflate(compressedBytes(block), block.rawLength());
+        synchronized (hot) {
+            hot.put(blockId, decoded);
+            Iterator<Integer> it = hot.keySet().iterator();
+            while (hot.size() > hotBlocks && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return decoded;
+    }
+
+    private byte[] compressedBytes(Block block) {
+        if (block.heap() != null) {
+            return block.heap();
+        }
+        byte[] bytes = new byte[block.compressedLength()];
+        if (block.direct() != null) {
+            block.direct().duplicate().get(bytes);
+            return bytes;
+        }
+        ByteBuffer target = ByteBuffer.wrap(bytes);
+        try {
+            long position = block.fileOffset();
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of payload file");
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read payload block", e);
+        }
+        return bytes;
+    }
+
+    private long writeToFile(byte[] compressed) {
+        try {
+            if (channel == null) {
+                Files.createDirectories(directory);
+                file = Files.createTempFile(directory, "rag-payloads-", ".blk");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+                System.out.println("   💽 Chunk payload file: " + file);
+            }
+            long position = fileSize;
+            ByteBuffer source = ByteBuffer.wrap(compressed);
+            while (source.hasRemaining()) {
+                fileSize += channel.write(source, fileSize);
+            }
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write payload block", e);
+        }
+    }
+
+    private Payload decode(byte[] bytes, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        int textLength = buffer.getInt();
+        String content = new String(bytes, offset + 4, textLength, StandardCharsets.UTF_8);
+        int metaOffset = offset + 4 + textLength;
+        try {
+            Map<String, Object> metadata = objectMapper.readValue(bytes, metaOffset, offset + length - metaOffset, METADATA_TYPE);
+            return new Payload(content, metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt chunk metadata", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, raw.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IllegalStateException("Corrupt payload block: " + length + "/" + rawLength + " bytes");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt payload block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public final class Cursor {
+        private final long openedAt;
+        private int blockId = -1;
+        private byte[] block;
+
+        private Cursor(long openedAt) {
+            this.openedAt = openedAt;
+        }
+
+        public Payload read(long handle) {
+            int id = (int) (handle >>> 32);
+            int index = (int) handle;
+            if (id != blockId) {
+                lock.readLock().lock();
+                try {
+                    if (closed || epoch != openedAt) {
+                        throw new IllegalStateException("Chunk payloads were cleared or replaced during the read");
+                    }
+                    if (id == blocks.size()) {
+                        byte[] payload = tail.get(index);
+                        return decode(payload, 0, payload.length);
+                    }
+                    Block sealed = blocks.get(id);
+                    block = inflate(compressedBytes(sealed), sealed.rawLength());
+                    blockId = id;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+            ByteBuffer header = ByteBuffer.wrap(block);
+            int start = header.getInt(4 + index * 4);
+            int end = header.getInt(4 + (index + 1) * 4);
+            return decode(block, start, end - start);
+        }
+    }
+
+    /**
+     * Decoded chunk text and metadata.
+     */
+    public record Payload(String content, Map<String, Object> metadata) {
+    }
+
+    private record Block(byte[] heap, ByteBuffer direct, long fileOffset, int compressedLength, int rawLength) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Registry of the active embedding model and its real vector dimension.
+ *
+ * The dimension is probed once by embedding a fixed text (the probe vector is kept),
+ * instead of being guessed from the model name. If the probe fails at startup
+ * (e.g. API key missing) or is disabled with rag.embedding.probe-on-startup=false
+ * (faster cold start), it runs lazily on first use.
+ * Stores bind to the resulting ModelSpec and refuse vectors from any other spec.
+ */
+@Service
+public class EmbeddingModelRegistry {
+
+    private static final String PROBE_TEXT = "query: dimension probe";
+
+    private final HuggingFaceEmbeddingService embeddingService;
+
+    @Value("${rag.embedding.probe-on-startup:true}")
+    private boolean probeOnStartup;
+
+    private volatile ModelSpec spec;
+    private volatile float[] probeVector;
+
+    public EmbeddingModelRegistry(HuggingFaceEmbeddingService embeddingService) {
+        this.embeddingService = embeddingService;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!probeOnStartup) {
+            System.out.println("⏭️  Embedding dimension probe deferred to first use");
+            return;
+        }
+        try {
+            probe();
+        } catch (Exception e) {
+            System.err.println("⚠️ Embedding dimension probe failed, will retry on first use: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Spec of the active model, probing it first if needed.
+     */
+    public ModelSpec getSpec() {
+        ModelSpec current = spec;
+        if (current != null) {
+            return current;
+        }
+        try {
+            return probe();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not determine embedding dimension for " + embeddingService.getModel(), e);
+        }
+    }
+
+    /**
+     * Dimension of the vectors the model produces (after any Matryoshka truncation).
+     */
+    public int getDimension() {
+        return getSpec().dimension();
+    }
+
+    /**
+     * True once the dimension has been probed successfully.
+     */
+    public boolean isProbed() {
+        return spec != null;
+    }
+
+    /**
+     * Cached embedding of the probe text, null until probed.
+     */
+    public float[] getProbeVector() {
+        return probeVector;
+    }
+
+    /**
+     * Refuse vectors built with a different model or dimension than the active one.
+     */
+    public void checkCompatible(String model, int dimension) {
+        ModelSpec active = getSpec();
+        if (!active.model().equals(model) || active.dimension() != dimension) {
+            throw new IllegalArgumentException("Incompatible vectors: " + model + " (dim=" + dimension
+                    + ") vs active " + active.model() + " (dim=" + active.dimension() + ")");
+        }
+    }
+
+    private synchronized ModelSpec probe() throws Exception {
+        if (spec != null) {
+            return spec;
+        }
+        float[] vector = embeddingService.embed(PROBE_TEXT);
+        if (vector.length == 0) {
+            throw new IllegalStateException("Probe returned an empty embedding");
+        }
+        int nativeDimension = embeddingService.getNativeDimension();
+        int truncateDim = embeddingService.getTruncateDim();
+        if (truncateDim > nativeDimension) {
+            throw new IllegalStateException("huggingface.embedding.truncate-dim=" + truncateDim
+                    + " exceeds the native dimension " + nativeDimension + " of " + embeddingService.getModel());
+        }
+
+        this.probeVector = vector;
+        this.spec = new ModelSpec(embeddingService.getModel(), nativeDimension, vector.length);
+
+        System.out.println("📏 Embedding model " + spec.model() + ": native dim=" + nativeDimension
+                + ", stored dim=" + spec.dimension());
+        return spec;
+    }
+
+    /**
+     * Model name, the model's native dimension, and the dimension vectors are stored with.
+     */
+    public record ModelSpec(String model, int nativeDimension, int dimension) {
+    }
+}
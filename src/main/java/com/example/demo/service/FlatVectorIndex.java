@@ -0,0 +1,141 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Full-precision vectors with exact cosine scan.
+ */
+public class FlatVectorIndex implements VectorIndex {
+
+    // Rows per tile in searchBatch: a tile stays in cache while every query is scored against it
+    private static final int TILE_ROWS = 1024;
+
+    private final List<float[]> vectors = new ArrayList<>();
+
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+
+    @Override
+    public void add(float[] vector) {
+        vectors.add(vector);
+    }
+
+    @Override
+    public void set(int slot, float[] vector) {
+        vectors.set(slot, vector);
+    }
+
+    @Override
+    public void swapRemove(int slot) {
+        int last = vectors.size() - 1;
+        if (slot != last) {
+            vectors.set(slot, vectors.get(last));
+        }
+        vectors.remove(last);
+    }
+
+    @Override
+    public float[] vector(int slot) {
+        return vectors.get(slot);
+    }
+
+    @Override
+    public void clear() {
+        vectors.clear();
+    }
+
+    /**
+     * Arrays are replaced, never written in place, so a copy of the references is enough.
+     */
+    @Override
+    public Frozen freeze() {
+        List<float[]> copy = new ArrayList<>(vectors);
+        return copy::get;
+    }
+
+    @Override
+    public VectorIndex emptyCopy() {
+        return new FlatVectorIndex();
+    }
+
+    @Override
+    public Hits search(float[] query, int topK, double threshold) {
+        double queryNorm = Math.sqrt(dot(query, query));
+        TopK top = new TopK(topK);
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            float[] vector = vectors.get(slot);
+            double score = dot(query, vector) / Math.max(queryNorm * Math.sqrt(dot(vector, vector)), 1e-12);
+            if (score >= threshold) {
+                top.offer(slot, score);
+            }
+        }
+        return top.toHits(vectors.size());
+    }
+
+    /**
+     * Matrix-style pass: the rows are split into tiles scanned in parallel, and each
+     * stored vector is read once and scored against all queries, instead of
+     * rescanning the whole index per query. Per-tile top-Ks are merged at the end.
+     */
+    @Override
+    public Hits[] searchBatch(List<float[]> queries, int topK, double threshold) {
+        int nq = queries.size();
+        float[][] q = queries.toArray(new float[0][]);
+        double[] queryNorms = new double[nq];
+        for (int j = 0; j < nq; j++) {
+            queryNorms[j] = Math.sqrt(dot(q[j], q[j]));
+        }
+
+        int tiles = (vectors.size() + TILE_ROWS - 1) / TILE_ROWS;
+        List<Hits[]> partials = IntStream.range(0, tiles).parallel().mapToObj(tile -> {
+            TopK[] tops = new TopK[nq];
+            for (int j = 0; j < nq; j++) {
+                tops[j] = new TopK(topK);
+            }
+            int end = Math.min(vectors.size(), (tile + 1) * TILE_ROWS);
+            for (int slot = tile * TILE_ROWS; slot < end; slot++) {
+                float[] vector = vectors.get(slot);
+                double norm = Math.sqrt(dot(vector, vector));
+                for (int j = 0; j < nq; j++) {
+                    double score = dot(q[j], vector) / Math.max(queryNorms[j] * norm, 1e-12);
+                    if (score >= threshold && score > tops[j].floor()) {
+                        tops[j].offer(slot, score);
+                    }
+                }
+            }
+            Hits[] hits = new Hits[nq];
+            for (int j = 0; j < nq; j++) {
+                hits[j] = tops[j].toHits(end - tile * TILE_ROWS);
+            }
+            return hits;
+        }).toList();
+
+        Hits[] merged = new Hits[nq];
+        for (int j = 0; j < nq; j++) {
+            TopK top = new TopK(topK);
+            for (Hits[] partial : partials) {
+                top.offerAll(partial[j]);
+            }
+            merged[j] = top.toHits(vectors.size());
+        }
+        return merged;
+    }
+
+    @Override
+    public long bytesPerVector() {
+        // float[] header + data, plus the list reference
+        return vectors.isEmpty() ? 0 : 16L + 4L * vectors.get(0).length + 8L;
+    }
+
+    static double dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -16,9 +16,12 @@ import java.util.*;
 public class HuggingFaceEmbeddingModelAdapter implements EmbeddingModel {
 
     private final HuggingFaceEmbeddingService huggingFaceService;
+    private final EmbeddingModelRegistry modelRegistry;
 
-    public HuggingFaceEmbeddingModelAdapter(HuggingFaceEmbeddingService huggingFaceService) {
+    public HuggingFaceEmbeddingModelAdapter(HuggingFaceEmbeddingService huggingFaceService,
+                                            EmbeddingModelRegistry modelRegistry) {
         this.huggingFaceService = huggingFaceService;
+        this.modelRegistry = modelRegistry;
         System.out.println("✅ HuggingFaceEmbeddingModelAdapter initialized");
     }
 
@@ -74,6 +77,6 @@ public class HuggingFaceEmbeddingModelAdapter implements EmbeddingModel {
 
     @Override
     public int dimensions() {
-        return huggingFaceService.getDimension();
+        return modelRegistry.getDimension();
     }
 }
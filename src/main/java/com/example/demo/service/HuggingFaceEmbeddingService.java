@@ -23,6 +23,21 @@ public class HuggingFaceEmbeddingService {
     @Value("${huggingface.embedding.model:sentence-transformers/all-MiniLM-L6-v2}")
     private String model;
 
+    // Inference Providers endpoint; overridable to point at a local stub (see loadtest)
+    @Value("${huggingface.api.base-url:https://router.huggingface.co/hf-inference/models/}")
+    private String baseUrl;
+
+    /**
+     * Matryoshka-style output dimension: keep only the first N components of every
+     * vector (then re-normalize). 0 keeps the model's native dimension.
+     * Only meaningful for models trained with Matryoshka representation learning.
+     */
+    @Value("${huggingface.embedding.truncate-dim:0}")
+    private int truncateDim;
+
+    // Native dimension observed in the last API response (0 until the first call)
+    private volatile int nativeDimension;
+
     private static final int BATCH_SIZE = 10; // HuggingFace recommended batch size
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 1000;
@@ -41,6 +56,9 @@ public class HuggingFaceEmbeddingService {
             System.out.println("✅ HuggingFaceEmbeddingService (improved) initialized");
             System.out.println("🔑 API key loaded: " + maskedKey);
             System.out.println("📦 Using model: " + model);
+            if (truncateDim > 0) {
+                System.out.println("✂️  Truncating embeddings to " + truncateDim + " dims (Matryoshka)");
+            }
         }
     }
 
@@ -75,13 +93,17 @@ public class HuggingFaceEmbeddingService {
 
     /**
      * Internal method to embed a single batch with retry logic.
+     * Reports time and retries (backoff included) to the request being timed, if any.
      */
     private List<float[]> embedBatchInternal(List<String> texts) throws Exception {
         Exception lastException = null;
+        long start = System.nanoTime();
         
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             try {
-                return embedBatchOnce(texts);
+                List<float[]> results = embedBatchOnce(texts);
+                RequestTimings.recordEmbed(System.nanoTime() - start, attempt - 1);
+                return results;
             } catch (Exception e) {
                 lastException = e;
                 if (attempt < MAX_RETRIES) {
@@ -91,6 +113,7 @@ public class HuggingFaceEmbeddingService {
             }
         }
         
+        RequestTimings.recordEmbed(System.nanoTime() - start, MAX_RETRIES - 1);
         throw new Exception("Hugging Face API failed after " + MAX_RETRIES + " attempts", lastException);
     }
 
@@ -109,7 +132,7 @@ public class HuggingFaceEmbeddingService {
         headers.set("Authorization", "Bearer " + apiKey);
 
         // API endpoint - using new Inference Providers API
-        String url = "https://router.huggingface.co/hf-inference/models/" + model;
+        String url = baseUrl + model;
 
         // For batch: send array of strings
         Map<String, Object> requestBody = Map.of(
@@ -133,13 +156,13 @@ public class HuggingFaceEmbeddingService {
         // Handle single text response: [0.1, 0.2, ...]
         if (root.isArray() && !root.isEmpty() && root.get(0).isNumber()) {
             float[] embedding = parseEmbeddingArray(root);
-            results.add(normalizeVector(embedding));
+            results.add(normalizeVector(truncate(embedding)));
         }
         // Handle batch response: [[0.1, 0.2, ...], [0.3, 0.4, ...]]
         else if (root.isArray() && !root.isEmpty() && root.get(0).isArray()) {
             for (JsonNode embeddingNode : root) {
                 float[] embedding = parseEmbeddingArray(embeddingNode);
-                results.add(normalizeVector(embedding));
+                results.add(normalizeVector(truncate(embedding)));
             }
         } else {
             throw new RuntimeException("Unexpected response format from Hugging Face API");
@@ -162,6 +185,18 @@ public class HuggingFaceEmbeddingService {
         return embedding;
     }
 
+    /**
+     * Keep the first truncateDim components (Matryoshka truncation).
+     * Records the native dimension before truncating.
+     */
+    private float[] truncate(float[] vector) {
+        nativeDimension = vector.length;
+        if (truncateDim > 0 && truncateDim < vector.length) {
+            return Arrays.copyOf(vector, truncateDim);
+        }
+        return vector;
+    }
+
     /**
      * Normalize vector using L2 norm (for cosine similarity).
      * Essential for accurate cosine similarity calculations.
@@ -190,18 +225,17 @@ public class HuggingFaceEmbeddingService {
     }
 
     /**
-     * Get embedding dimension for the model.
-     * Returns 1024 for intfloat/multilingual-e5-large.
-     * Returns 384 for sentence-transformers/all-MiniLM-L6-v2.
+     * Configured Matryoshka output dimension, 0 if vectors are not truncated.
      */
-    public int getDimension() {
-        // Dimension depends on the model
-        if (model.contains("multilingual-e5-large")) {
-            return 1024;
-        } else if (model.contains("all-MiniLM-L6-v2")) {
-            return 384;
-        }
-        // Default fallback
-        return 768;
+    public int getTruncateDim() {
+        return this.truncateDim;
+    }
+
+    /**
+     * Native dimension seen in the last API response, 0 before the first call.
+     * Use EmbeddingModelRegistry for the dimension of stored vectors.
+     */
+    public int getNativeDimension() {
+        return this.nativeDimension;
     }
 }
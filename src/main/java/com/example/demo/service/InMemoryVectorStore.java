@@ -0,0 +1,669 @@
+package com.example.demo.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory VectorStore. Vectors live in a VectorIndex: exact cosine scan
+ * (FlatVectorIndex) or compressed approximate search (IvfPqVectorIndex).
+ * Chunk text and metadata live in a ChunkPayloadStore as compressed blocks and
+ * are only decoded for the documents a search returns.
+ * Drop-in for SimpleVectorStore, but exposes a point-in-time RowView and a staged
+ * Loader so the whole index can be exported/imported as a snapshot without holding
+ * the lock or the decoded corpus, and supports a real clear().
+ * The store binds to the embedding model spec of its first vectors and refuses
+ * vectors from any other model or dimension until it is cleared.
+ */
+public class InMemoryVectorStore implements SearchableVectorStore {
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingModelRegistry modelRegistry;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Parallel rows, indexed by slot; replaced as a whole by Loader.commit()
+    private List<String> ids = new ArrayList<>();
+    private long[] payloadHandles = new long[16];
+    private ChunkPayloadStore payloads;
+    private VectorIndex index;
+    private Map<String, Integer> slotById = new HashMap<>();
+
+    // IVF-PQ training runs on its own thread, one at a time
+    private final ExecutorService trainer;
+    private final AtomicBoolean training = new AtomicBoolean(false);
+
+    // Bound model spec, null/0 while empty
+    private String model;
+    private int dimension;
+
+    // Rows were imported from a snapshot of PQ reconstructions; never trained on until cleared
+    private boolean lossyVectors;
+
+    public InMemoryVectorStore(EmbeddingModel embeddingModel, EmbeddingModelRegistry modelRegistry) {
+        this(embeddingModel, modelRegistry, new FlatVectorIndex(),
+                new ChunkPayloadStore(ChunkPayloadStore.Storage.HEAP, 64 * 1024, 64, null));
+    }
+
+    public InMemoryVectorStore(EmbeddingModel embeddingModel, EmbeddingModelRegistry modelRegistry,
+                               VectorIndex index, ChunkPayloadStore payloads) {
+        this.embeddingModel = embeddingModel;
+        this.modelRegistry = modelRegistry;
+        this.index = index;
+        this.payloads = payloads;
+        this.trainer = index instanceof IvfPqVectorIndex
+                ? Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "ivfpq-trainer");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<String> texts = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            texts.add(document.getContent());
+        }
+        addEmbedded(documents, embeddingModel.embed(texts));
+    }
+
+    @Override
+    public void addEmbedded(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Got " + embeddings.size() + " embeddings for " + documents.size() + " documents");
+        }
+        EmbeddingModelRegistry.ModelSpec active = modelRegistry.getSpec();
+        lock.writeLock().lock();
+        try {
+            bind(active.model(), active.dimension());
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                put(document.getId(), document.getContent(), document.getMetadata(), embeddings.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maybeAutoTrain();
+    }
+
+    /**
+     * Bind an empty store to a model spec, or check that the spec matches the bound one.
+     */
+    private void bind(String model, int dimension) {
+        if (ids.isEmpty()) {
+            this.model = model;
+            this.dimension = dimension;
+        } else if (!Objects.equals(this.model, model) || this.dimension != dimension) {
+            throw new IllegalArgumentException("Store holds " + this.model + " vectors (dim=" + this.dimension
+                    + "), refusing " + model + " vectors (dim=" + dimension + "). Clear the index first.");
+        }
+    }
+
+    private void put(String id, String content, Map<String, Object> meta, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length + " does not match store dimension " + dimension);
+        }
+        Integer existing = slotById.get(id);
+        if (existing != null) {
+            payloads.release(payloadHandles[existing]);
+            payloadHandles[existing] = payloads.append(content, meta);
+            index.set(existing, vector);
+            return;
+        }
+        if (ids.size() == payloadHandles.length) {
+            payloadHandles = Arrays.copyOf(payloadHandles, payloadHandles.length * 2);
+        }
+        payloadHandles[ids.size()] = payloads.append(content, meta);
+        slotById.put(id, ids.size());
+        ids.add(id);
+        index.add(vector);
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        boolean removed = false;
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer slot = slotById.remove(id);
+                if (slot == null) {
+                    continue;
+                }
+                // Swap-remove: move the last row into the freed slot
+                int last = ids.size() - 1;
+                payloads.release(payloadHandles[slot]);
+                if (slot != last) {
+                    ids.set(slot, ids.get(last));
+                    payloadHandles[slot] = payloadHandles[last];
+                    slotById.put(ids.get(slot), slot);
+                }
+                index.swapRemove(slot);
+                ids.remove(last);
+                removed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return Optional.of(removed);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (request.getFilterExpression() != null) {
+            throw new UnsupportedOperationException("Metadata filters are not supported by InMemoryVectorStore");
+        }
+        float[] query = embeddingModel.embed(request.getQuery());
+        return similaritySearch(query, request.getTopK(), request.getSimilarityThreshold());
+    }
+
+    /**
+     * Cosine top-K for an already-embedded query, best first.
+     * Exact with the flat index, approximate (nprobe lists) with a trained IVF-PQ index.
+     */
+    @Override
+    public List<Document> similaritySearch(float[] query, int topK, double threshold) {
+        lock.readLock().lock();
+        try {
+            checkQueryDimension(query);
+            VectorIndex.Hits hits = index.search(query, topK, threshold);
+            RequestTimings.recordScanned(hits.scanned());
+            return toDocuments(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Batch search in one pass over the index (see VectorIndex.searchBatch).
+     */
+    @Override
+    public List<List<Document>> similaritySearchBatch(List<float[]> queries, int topK, double threshold) {
+        lock.readLock().lock();
+        try {
+            for (float[] query : queries) {
+                checkQueryDimension(query);
+            }
+            VectorIndex.Hits[] hits = index.searchBatch(queries, topK, threshold);
+            List<List<Document>> results = new ArrayList<>(hits.length);
+            int scanned = 0;
+            for (VectorIndex.Hits queryHits : hits) {
+                results.add(toDocuments(queryHits));
+                scanned += queryHits.scanned();
+            }
+            RequestTimings.recordScanned(scanned);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void checkQueryDimension(float[] query) {
+        if (dimension != 0 && query.length != dimension) {
+            throw new IllegalArgumentException("Query dimension " + query.length + " does not match store dimension " + dimension);
+        }
+    }
+
+    private List<Document> toDocuments(VectorIndex.Hits hits) {
+        List<Document> results = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            int slot = hits.slots()[i];
+            double score = hits.scores()[i];
+            ChunkPayloadStore.Payload payload = payloads.read(payloadHandles[slot]);
+            Map<String, Object> meta = new HashMap<>(payload.metadata());
+            meta.put("score", score);
+            meta.put("distance", 1.0 - score);
+            results.add(new Document(ids.get(slot), payload.content(), meta));
+        }
+        return results;
+    }
+
+    /**
+     * Train (or retrain) the IVF-PQ index on a sample of the stored full-precision vectors.
+     * k-means runs without any lock, encoding runs under the read lock so searches
+     * continue on the current codes, and only the final swap takes the write lock. Rows
+     * appended meanwhile are encoded at swap time; if rows were replaced or deleted,
+     * everything is re-encoded. A trained index can only be retrained when it keeps its
+     * full-precision vectors (rag.ivfpq.full-precision); otherwise clear() and reindex.
+     * A snapshot import that replaces the index meanwhile discards the model.
+     *
+     * @return false if the index is not IVF-PQ, is empty, has no full-precision vectors
+     *         (trained without them, or loaded from a lossy snapshot), or training is running
+     */
+    public boolean trainIndex() {
+        if (!(index instanceof IvfPqVectorIndex ivf) || !training.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            List<float[]> sample;
+            lock.readLock().lock();
+            try {
+                if (ivf != index || !canTrain(ivf)) {
+                    return false;
+                }
+                sample = ivf.trainingSample();
+            } finally {
+                lock.readLock().unlock();
+            }
+            System.out.println("🧮 Training IVF-PQ on " + sample.size() + " sampled vectors...");
+            IvfPqVectorIndex.Quantizer quantizer = ivf.fit(sample);
+
+            IvfPqVectorIndex.Encoded encoded;
+            long mods;
+            lock.readLock().lock();
+            try {
+                if (ivf != index || !canTrain(ivf)) {
+                    return false;
+                }
+                mods = ivf.structuralMods();
+                encoded = ivf.encodeAll(quantizer);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (ivf != index || ids.isEmpty() || quantizer.dimension != dimension || !canTrain(ivf)) {
+                    System.out.println("   ⚠️  Store was cleared or replaced during training, discarding model");
+                    return false;
+                }
+                if (ivf.structuralMods() != mods) {
+                    encoded = ivf.encodeAll(quantizer);
+                } else {
+                    ivf.encodeAppended(quantizer, encoded);
+                }
+                ivf.install(quantizer, encoded);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("   ✅ IVF-PQ trained in " + (System.currentTimeMillis() - start) + "ms: "
+                    + ivf.bytesPerVector() + " bytes/vector");
+            return true;
+        } finally {
+            training.set(false);
+        }
+    }
+
+    private boolean canTrain(IvfPqVectorIndex ivf) {
+        return !lossyVectors && ivf.canTrain();
+    }
+
+    /**
+     * Start training on the background thread.
+     *
+     * @return false if the index is not IVF-PQ, has nothing to train on (empty, or no
+     *         full-precision vectors) or training is already running
+     */
+    public boolean trainIndexAsync() {
+        if (trainer == null || training.get()) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            if (!canTrain((IvfPqVectorIndex) index)) {
+                return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        trainer.submit(() -> {
+            try {
+                trainIndex();
+            } catch (Exception e) {
+                System.err.println("❌ IVF-PQ training failed: " + e.getMessage());
+            }
+        });
+        return true;
+    }
+
+    private void maybeAutoTrain() {
+        if (trainer == null || training.get()) {
+            return;
+        }
+        boolean due;
+        lock.readLock().lock();
+        try {
+            due = !lossyVectors && ((IvfPqVectorIndex) index).shouldAutoTrain();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (due) {
+            trainIndexAsync();
+        }
+    }
+
+    /**
+     * Index type, memory footprint and (for IVF-PQ) training state, plus chunk payload
+     * storage stats and the estimated heap bytes per chunk (id + row bookkeeping +
+     * vector + heap-resident payload bytes).
+     */
+    public Map<String, Object> describeIndex() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> info;
+            if (index instanceof IvfPqVectorIndex ivf) {
+                info = ivf.describe();
+            } else {
+                info = new LinkedHashMap<>();
+                info.put("vectors", index.size());
+                info.put("bytesPerVector", index.bytesPerVector());
+            }
+            info.put("type", index instanceof IvfPqVectorIndex ? "ivfpq" : "flat");
+            info.put("training", training.get());
+            info.put("lossyVectors", vectorsLossy());
+
+            int n = ids.size();
+            if (n > 0) {
+                // id String + byte[] headers, slotById node + boxed slot, list and handle slots
+                long rowBytes = 0;
+                for (String id : ids) {
+                    rowBytes += 24 + 16 + id.length() + 32 + 16 + 8 + 8;
+                }
+                long heapBytes = rowBytes + index.bytesPerVector() * n + payloads.heapBytes();
+                info.put("heapBytesPerChunk", heapBytes / n);
+            }
+            info.put("payloads", payloads.describe());
+            return info;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void close() {
+        if (trainer != null) {
+            trainer.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            index.close();
+            payloads.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Point-in-time view of all rows, for snapshot export. The read lock is only held
+     * to copy the row bookkeeping and freeze the index (see VectorIndex.freeze), so
+     * writes continue while the view is read. Rows are ordered by payload handle,
+     * so payloads are decoded one sealed block at a time, outside the hot cache.
+     * A trained IVF-PQ index without full-precision vectors yields reconstructions
+     * and the view is flagged lossy. Close the view when done.
+     */
+    public RowView rowView() {
+        lock.readLock().lock();
+        try {
+            int n = ids.size();
+            long[] handles = Arrays.copyOf(payloadHandles, n);
+            return new RowView(model, dimension, vectorsLossy(), new ArrayList<>(ids), handles,
+                    handleOrder(handles), index.freeze(), payloads.cursor());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Slots sorted by payload handle (block, then position in block).
+     */
+    private static int[] handleOrder(long[] handles) {
+        int[] order = new int[handles.length];
+        boolean sorted = true;
+        for (int slot = 0; slot < handles.length; slot++) {
+            order[slot] = slot;
+            sorted &= slot == 0 || handles[slot - 1] <= handles[slot];
+        }
+        if (sorted) {
+            return order;
+        }
+        Integer[] boxed = new Integer[handles.length];
+        for (int slot = 0; slot < handles.length; slot++) {
+            boxed[slot] = slot;
+        }
+        Arrays.sort(boxed, (a, b) -> Long.compare(handles[a], handles[b]));
+        for (int i = 0; i < boxed.length; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    /**
+     * Caller holds the lock.
+     */
+    private boolean vectorsLossy() {
+        return lossyVectors || index instanceof IvfPqVectorIndex ivf && ivf.isLossy();
+    }
+
+    /**
+     * Staged replacement of the whole store content, for snapshot import. Rows are
+     * written into an empty index and payload store of the same configuration while
+     * the current content keeps serving; commit() swaps them in under the write lock.
+     * Lossy rows are stored as they are but never used to train an IVF-PQ index.
+     */
+    public Loader loader(String model, int dimension, boolean lossy) {
+        lock.readLock().lock();
+        try {
+            return new Loader(model, dimension, lossy, index.emptyCopy(), payloads.emptyCopy());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearUnlocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clearUnlocked() {
+        ids.clear();
+        payloads.clear();
+        index.clear();
+        slotById.clear();
+        model = null;
+        dimension = 0;
+        lossyVectors = false;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Model the stored vectors were built with, null while empty.
+     */
+    public String getModel() {
+        lock.readLock().lock();
+        try {
+            return model;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dimension of stored vectors, 0 while empty.
+     */
+    public int getDimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rows as they were when rowView() was called; index i is the i-th row in export order.
+     * Payload reads fail with IllegalStateException if the store was cleared or replaced since.
+     *
+     * lossy: vectors are PQ reconstructions, not the original embeddings
+     */
+    public static final class RowView implements AutoCloseable {
+        private final String model;
+        private final int dimension;
+        private final boolean lossy;
+        private final List<String> ids;
+        private final long[] handles;
+        private final int[] order;
+        private final VectorIndex.Frozen vectors;
+        private final ChunkPayloadStore.Cursor cursor;
+
+        private RowView(String model, int dimension, boolean lossy, List<String> ids, long[] handles, int[] order,
+                        VectorIndex.Frozen vectors, ChunkPayloadStore.Cursor cursor) {
+            this.model = model;
+            this.dimension = dimension;
+            this.lossy = lossy;
+            this.ids = ids;
+            this.handles = handles;
+            this.order = order;
+            this.vectors = vectors;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Bound model, null if the store was empty.
+         */
+        public String model() {
+            return model;
+        }
+
+        public int dimension() {
+            return dimension;
+        }
+
+        public boolean lossy() {
+            return lossy;
+        }
+
+        public int size() {
+            return order.length;
+        }
+
+        public String id(int i) {
+            return ids.get(order[i]);
+        }
+
+        public float[] vector(int i) {
+            return vectors.vector(order[i]);
+        }
+
+        public ChunkPayloadStore.Payload payload(int i) {
+            return cursor.read(handles[order[i]]);
+        }
+
+        @Override
+        public void close() {
+            vectors.close();
+        }
+    }
+
+    /**
+     * Staged store content: all vectors first, then one payload per vector in the same
+     * order. Nothing is visible until commit(); close() without commit discards it.
+     */
+    public final class Loader implements AutoCloseable {
+        private final String model;
+        private final int dimension;
+        private final boolean lossy;
+        private final VectorIndex stagedIndex;
+        private final ChunkPayloadStore stagedPayloads;
+        private final List<String> stagedIds = new ArrayList<>();
+        private final Map<String, Integer> stagedSlots = new HashMap<>();
+        private long[] stagedHandles = new long[16];
+        private boolean done;
+
+        private Loader(String model, int dimension, boolean lossy, VectorIndex stagedIndex,
+                       ChunkPayloadStore stagedPayloads) {
+            this.model = model;
+            this.dimension = dimension;
+            this.lossy = lossy;
+            this.stagedIndex = stagedIndex;
+            this.stagedPayloads = stagedPayloads;
+        }
+
+        public void addVector(float[] vector) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException("Vector dimension " + vector.length + " does not match store dimension " + dimension);
+            }
+            stagedIndex.add(vector);
+        }
+
+        public void addPayload(String id, String content, Map<String, Object> meta) {
+            int slot = stagedIds.size();
+            if (slot == stagedIndex.size()) {
+                throw new IllegalArgumentException("More chunks than vectors (" + stagedIndex.size() + ")");
+            }
+            if (stagedSlots.putIfAbsent(id, slot) != null) {
+                throw new IllegalArgumentException("Duplicate chunk id " + id);
+            }
+            if (slot == stagedHandles.length) {
+                stagedHandles = Arrays.copyOf(stagedHandles, stagedHandles.length * 2);
+            }
+            stagedHandles[slot] = stagedPayloads.append(content, meta);
+            stagedIds.add(id);
+        }
+
+        /**
+         * Swap the staged rows in and release the previous index and payloads.
+         */
+        public void commit() {
+            if (done) {
+                throw new IllegalStateException("Loader already committed or closed");
+            }
+            if (stagedIds.size() != stagedIndex.size()) {
+                throw new IllegalArgumentException("Got " + stagedIds.size() + " chunks for " + stagedIndex.size() + " vectors");
+            }
+            VectorIndex oldIndex;
+            ChunkPayloadStore oldPayloads;
+            lock.writeLock().lock();
+            try {
+                oldIndex = index;
+                oldPayloads = payloads;
+                ids = stagedIds;
+                payloadHandles = stagedHandles;
+                slotById = stagedSlots;
+                index = stagedIndex;
+                payloads = stagedPayloads;
+                InMemoryVectorStore.this.model = model;
+                InMemoryVectorStore.this.dimension = dimension;
+                lossyVectors = lossy;
+                done = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            oldIndex.close();
+            oldPayloads.close();
+            maybeAutoTrain();
+        }
+
+        @Override
+        public void close() {
+            if (!done) {
+                done = true;
+                stagedIndex.close();
+                stagedPayloads.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Optional background load of a persisted index snapshot (GET /api/admin/snapshot)
+ * once the application is ready, so a new instance serves traffic immediately
+ * instead of re-embedding PDFs or blocking startup on a large import.
+ */
+@Service
+public class IndexPreloader {
+
+    private final IndexSnapshotService snapshotService;
+
+    @Value("${rag.index.preload-path:}")
+    private String preloadPath;
+
+    // disabled | missing | loading | loaded | failed
+    private volatile String status = "disabled";
+    private volatile int vectors;
+    private volatile long millis;
+    private volatile String error;
+
+    public IndexPreloader(IndexSnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (preloadPath == null || preloadPath.isBlank()) {
+            return;
+        }
+        Path path = Path.of(preloadPath);
+        if (!Files.isRegularFile(path)) {
+            status = "missing";
+            System.err.println("⚠️ Index preload skipped, snapshot not found: " + path);
+            return;
+        }
+        status = "loading";
+        Thread loader = new Thread(() -> load(path), "index-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void load(Path path) {
+        System.out.println("📥 Preloading index snapshot in background: " + path);
+        long t0 = System.currentTimeMillis();
+        try (InputStream in = Files.newInputStream(path)) {
+            vectors = snapshotService.importSnapshot(in, Files.size(path));
+            millis = System.currentTimeMillis() - t0;
+            status = "loaded";
+            System.out.println("   ✅ Preloaded " + vectors + " vectors in " + millis + "ms");
+        } catch (Exception e) {
+            millis = System.currentTimeMillis() - t0;
+            error = e.getMessage();
+            status = "failed";
+            System.err.println("❌ Index preload failed: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("status", status);
+        if (!"disabled".equals(status)) {
+            info.put("path", preloadPath);
+            info.put("vectors", vectors);
+            info.put("millis", millis);
+        }
+        if (error != null) {
+            info.put("error", error);
+        }
+        return info;
+    }
+}
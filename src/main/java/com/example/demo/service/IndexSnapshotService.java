@@ -0,0 +1,348 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Export/import of the whole vector index as a compact binary snapshot,
+ * so a fresh instance can be bulk-loaded without re-embedding every PDF.
+ *
+ * Layout (big-endian):
+ *   header   magic "RAGS", version, model name, dimension (from EmbeddingModelRegistry), count, flags
+ *   vectors  count * dimension packed float32
+ *   payload  blocks of (raw length, compressed length, deflated (id, text, metadata JSON) records),
+ *            ended by a (0, 0) block
+ *   trailer  CRC32 of everything before it
+ *
+ * Flag LOSSY marks vectors that are PQ reconstructions (export of a trained IVF-PQ index
+ * without full-precision vectors); they are imported as they are but never trained on.
+ *
+ * Export reads a point-in-time RowView of the store without holding its lock and streams
+ * block by block, so only one decoded store block and one snapshot block are buffered.
+ * Import streams vectors and payload blocks into a staged Loader and swaps it in only
+ * after the count and checksum are verified; the current index keeps serving until then.
+ * Every length from the (untrusted) file is checked against the upload size and
+ * rag.snapshot.max-bytes / max-inflated-bytes before allocating anything from it.
+ */
+@Service
+public class IndexSnapshotService {
+
+    private static final int MAGIC = 0x52414753; // "RAGS"
+    private static final short VERSION = 3;
+    private static final int FLAG_LOSSY = 0x01;
+    private static final int MAX_DIMENSION = 65536;
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() { };
+
+    private final InMemoryVectorStore vectorStore;
+    private final EmbeddingModelRegistry modelRegistry;
+    private final QueryPrefetchService prefetchService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${rag.snapshot.max-bytes:2147483648}")
+    private long maxBytes;
+
+    @Value("${rag.snapshot.max-inflated-bytes:1073741824}")
+    private long maxInflatedBytes;
+
+    public IndexSnapshotService(InMemoryVectorStore vectorStore, EmbeddingModelRegistry modelRegistry,
+                                QueryPrefetchService prefetchService) {
+        this.vectorStore = vectorStore;
+        this.modelRegistry = modelRegistry;
+        this.prefetchService = prefetchService;
+    }
+
+    /**
+     * Write the current index to out.
+     *
+     * @return number of vectors written
+     */
+    public int exportSnapshot(OutputStream out) throws IOException {
+        try (InMemoryVectorStore.RowView rows = vectorStore.rowView()) {
+            return write(rows, out);
+        }
+    }
+
+    private int write(InMemoryVectorStore.RowView rows, OutputStream out) throws IOException {
+        // The header records the spec the index is bound to (the active model's if empty)
+        String model = rows.model() != null ? rows.model() : modelRegistry.getSpec().model();
+        int dimension = rows.model() != null ? rows.dimension() : modelRegistry.getDimension();
+        int count = rows.size();
+
+        System.out.println("📦 Exporting index snapshot: " + count + " vectors (dim=" + dimension + ")"
+                + (rows.lossy() ? ", lossy PQ reconstructions" : ""));
+
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(out), new CRC32());
+        DataOutputStream data = new DataOutputStream(checked);
+
+        // Header
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeUTF(model);
+        data.writeInt(dimension);
+        data.writeInt(count);
+        data.writeByte(rows.lossy() ? FLAG_LOSSY : 0);
+
+        // Packed vectors
+        ByteBuffer row = ByteBuffer.allocate(dimension * Float.BYTES);
+        for (int i = 0; i < count; i++) {
+            row.clear();
+            row.asFloatBuffer().put(rows.vector(i));
+            data.write(row.array());
+        }
+
+        // Compressed chunk text + metadata, one block at a time
+        long rawLength = 0;
+        long compressedLength = 0;
+        CountingDataOutput block = new CountingDataOutput(new ByteArrayOutputStream(BLOCK_BYTES + BLOCK_BYTES / 4));
+        for (int i = 0; i < count; i++) {
+            ChunkPayloadStore.Payload payload = rows.payload(i);
+            block.writeBytes(rows.id(i).getBytes(StandardCharsets.UTF_8));
+            block.writeBytes(payload.content().getBytes(StandardCharsets.UTF_8));
+            block.writeBytes(objectMapper.writeValueAsBytes(payload.metadata()));
+            if (block.count >= BLOCK_BYTES || i == count - 1) {
+                byte[] compressed = block.seal();
+                data.writeInt(block.count);
+                data.writeInt(compressed.length);
+                data.write(compressed);
+                rawLength += block.count;
+                compressedLength += compressed.length;
+                block.reset();
+            }
+        }
+        data.writeInt(0);
+        data.writeInt(0);
+
+        // Trailer (not part of the checksum)
+        data.flush();
+        long crc = checked.getChecksum().getValue();
+        DataOutputStream trailer = new DataOutputStream(out);
+        trailer.writeLong(crc);
+        trailer.flush();
+
+        System.out.println("   ✅ Snapshot written (payload " + rawLength + " → " + compressedLength + " bytes)");
+        return count;
+    }
+
+    /**
+     * Validate a snapshot and replace the current index with it.
+     *
+     * @param size length of the input in bytes, or -1 if unknown (then only rag.snapshot.max-bytes applies)
+     * @return number of vectors loaded
+     */
+    public int importSnapshot(InputStream in, long size) throws IOException {
+        try {
+            return load(in, size);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Truncated snapshot", e);
+        }
+    }
+
+    private int load(InputStream in, long size) throws IOException {
+        // Bytes the rest of the file may still hold; every length read from it is checked against this
+        long remaining = size >= 0 ? Math.min(size, maxBytes) : maxBytes;
+
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+        DataInputStream data = new DataInputStream(checked);
+
+        // Header
+        if (data.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an index snapshot (bad magic)");
+        }
+        short version = data.readShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version + " (expected " + VERSION + ")");
+        }
+        String model = data.readUTF();
+        int dimension = data.readInt();
+        int count = data.readInt();
+        int flags = data.readUnsignedByte();
+
+        if ((flags & ~FLAG_LOSSY) != 0) {
+            throw new IllegalArgumentException("Corrupt snapshot (unknown flags " + flags + ")");
+        }
+        boolean lossy = (flags & FLAG_LOSSY) != 0;
+        if (dimension <= 0 || dimension > MAX_DIMENSION) {
+            throw new IllegalArgumentException("Corrupt snapshot (dimension " + dimension + ")");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Corrupt snapshot (negative count)");
+        }
+        long vectorBytes = (long) count * dimension * Float.BYTES;
+        if (vectorBytes > remaining) {
+            throw new IllegalArgumentException("Corrupt or truncated snapshot (" + count + " x " + dimension
+                    + " vectors need " + vectorBytes + " bytes, at most " + remaining + " available)");
+        }
+        remaining -= vectorBytes;
+        modelRegistry.checkCompatible(model, dimension);
+
+        System.out.println("📦 Importing index snapshot: " + count + " vectors (model=" + model + ", dim=" + dimension + ")"
+                + (lossy ? ", lossy PQ reconstructions: IVF-PQ training disabled until cleared" : ""));
+
+        // Rows are staged as they stream in; nothing replaces the current index before the checksum matches
+        try (InMemoryVectorStore.Loader loader = vectorStore.loader(model, dimension, lossy)) {
+            // Packed vectors
+            byte[] rowBytes = new byte[dimension * Float.BYTES];
+            for (int i = 0; i < count; i++) {
+                data.readFully(rowBytes);
+                float[] vector = new float[dimension];
+                ByteBuffer.wrap(rowBytes).asFloatBuffer().get(vector);
+                loader.addVector(vector);
+            }
+
+            // Compressed payload blocks, inflated and parsed one at a time
+            int loaded = 0;
+            long inflatedBytes = 0;
+            while (true) {
+                int rawLength = data.readInt();
+                int compressedLength = data.readInt();
+                if (rawLength < 0 || compressedLength < 0) {
+                    throw new IllegalArgumentException("Corrupt snapshot (negative payload length)");
+                }
+                if (rawLength == 0 && compressedLength == 0) {
+                    break;
+                }
+                remaining -= 2L * Integer.BYTES;
+                inflatedBytes += rawLength;
+                // Deflate cannot expand data by more than ~1032:1
+                if (compressedLength > remaining || inflatedBytes > maxInflatedBytes
+                        || rawLength > compressedLength * 1032L + 64) {
+                    throw new IllegalArgumentException("Corrupt or oversized snapshot payload (" + compressedLength
+                            + " compressed bytes, " + inflatedBytes + " inflated bytes so far)");
+                }
+                remaining -= compressedLength;
+                byte[] compressed = new byte[compressedLength];
+                data.readFully(compressed);
+                loaded = parseBlock(inflate(compressed, rawLength), loader, loaded, count);
+            }
+            if (loaded != count) {
+                throw new IllegalArgumentException("Corrupt snapshot payload (" + loaded + " of " + count + " chunks)");
+            }
+
+            long expectedCrc = checked.getChecksum().getValue();
+            long storedCrc = new DataInputStream(buffered).readLong();
+            if (storedCrc != expectedCrc) {
+                throw new IllegalArgumentException("Snapshot checksum mismatch");
+            }
+
+            loader.commit();
+        }
+        prefetchService.invalidate();
+
+        System.out.println("   ✅ Snapshot loaded: " + count + " vectors in store");
+        return count;
+    }
+
+    /**
+     * Stage the (id, text, metadata) records of one inflated block.
+     *
+     * @return chunks loaded so far
+     */
+    private int parseBlock(byte[] raw, InMemoryVectorStore.Loader loader, int loaded, int count) throws IOException {
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(raw));
+        while (payload.available() > 0) {
+            if (loaded == count) {
+                throw new IllegalArgumentException("Corrupt snapshot payload (more than " + count + " chunks)");
+            }
+            String id = new String(readBytes(payload), StandardCharsets.UTF_8);
+            String content = new String(readBytes(payload), StandardCharsets.UTF_8);
+            Map<String, Object> metadata;
+            try {
+                metadata = objectMapper.readValue(readBytes(payload), METADATA_TYPE);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Corrupt snapshot payload (metadata)", e);
+            }
+            loader.addPayload(id, content, metadata);
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Inflate one payload block, which must expand to exactly rawLength bytes.
+     */
+    private static byte[] inflate(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            // The stream must also end exactly there: any byte left means rawLength was understated
+            if (length != rawLength || (!inflater.finished() && inflater.inflate(new byte[1]) != 0)
+                    || !inflater.finished()) {
+                throw new IllegalArgumentException("Corrupt snapshot payload (raw length mismatch)");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt snapshot payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IllegalArgumentException("Corrupt snapshot payload");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Length-prefixed record writer for one payload block, counting uncompressed bytes.
+     */
+    private static final class CountingDataOutput extends DataOutputStream {
+        private final ByteArrayOutputStream buffer;
+        int count;
+
+        CountingDataOutput(ByteArrayOutputStream buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            writeInt(bytes.length);
+            write(bytes);
+            count += Integer.BYTES + bytes.length;
+        }
+
+        byte[] seal() throws IOException {
+            flush();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, count / 2));
+                try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                    buffer.writeTo(out);
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        void reset() {
+            buffer.reset();
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,672 @@
+package com.example.demo.service;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * IVF-PQ vector index: k-means coarse partitions (inverted lists) plus
+ * product-quantized residual codes, searched with asymmetric-distance lookup tables.
+ *
+ * Until the first training, vectors are kept at full precision and searched exactly.
+ * After training each vector costs m code bytes plus three ints of bookkeeping,
+ * and a query scans only the nprobe lists closest to it.
+ * Vectors are L2-normalized on insert, so cosine = 1 - ||q - x||² / 2.
+ *
+ * Training is split in phases so InMemoryVectorStore can run the expensive parts
+ * without blocking searches: fit (no lock), encodeAll (read lock), install (write lock).
+ * install drops the heap copies of the full-precision vectors. With a VectorSpill
+ * (rag.ivfpq.full-precision) they are moved there instead and kept in step with every
+ * add/set/swapRemove, so the index can be retrained and vector(slot) stays exact.
+ * Without one, only PQ reconstructions remain; fitting a codebook on those would compound
+ * quantization error on every retrain, so retraining then means clear() and a reindex.
+ */
+public class IvfPqVectorIndex implements VectorIndex {
+
+    private static final int MAX_CODEWORDS = 256; // codes are single bytes
+
+    private final int configuredLists;
+    private final int subQuantizers;
+    private final int nprobe;
+    private final int trainMinVectors;
+    private final int maxTrainSample;
+    private final int iterations;
+
+    // After training: full-precision normalized vectors by slot, or null (reconstructions only)
+    private final VectorSpill fullPrecision;
+
+    // Before training: full-precision normalized vectors
+    private final List<float[]> raw = new ArrayList<>();
+
+    // After training
+    private Quantizer quantizer;
+    private byte[] codes = new byte[0];
+    private int[] listOf = new int[0];
+    private int[] posInList = new int[0];
+    private int[][] lists = new int[0][];
+    private int[] listSizes = new int[0];
+    private int size;
+
+    // Bumped on set/swapRemove/clear, so training can tell whether slots moved under it
+    private long structuralMods;
+    private int trainedOn;
+    private long trainedAtMillis;
+
+    /**
+     * @param lists coarse partitions, 0 = sqrt(n) at training time
+     * @param subQuantizers PQ sub-vectors per vector (= code bytes per vector)
+     * @param nprobe lists scanned per query
+     * @param trainMinVectors auto-train once this many vectors are stored (0 = never)
+     * @param maxTrainSample vectors sampled for k-means
+     * @param iterations k-means iterations
+     */
+    public IvfPqVectorIndex(int lists, int subQuantizers, int nprobe, int trainMinVectors,
+                            int maxTrainSample, int iterations) {
+        this(lists, subQuantizers, nprobe, trainMinVectors, maxTrainSample, iterations, null);
+    }
+
+    /**
+     * @param fullPrecision where trained vectors keep their full-precision copy for retraining, or null
+     */
+    public IvfPqVectorIndex(int lists, int subQuantizers, int nprobe, int trainMinVectors,
+                            int maxTrainSample, int iterations, VectorSpill fullPrecision) {
+        this.fullPrecision = fullPrecision;
+        this.configuredLists = Math.max(0, lists);
+        this.subQuantizers = Math.max(1, subQuantizers);
+        this.nprobe = Math.max(1, nprobe);
+        this.trainMinVectors = Math.max(0, trainMinVectors);
+        this.maxTrainSample = Math.max(MAX_CODEWORDS, maxTrainSample);
+        this.iterations = Math.max(1, iterations);
+    }
+
+    @Override
+    public int size() {
+        return quantizer == null ? raw.size() : size;
+    }
+
+    @Override
+    public void add(float[] vector) {
+        float[] v = normalize(vector);
+        if (quantizer == null) {
+            raw.add(v);
+            return;
+        }
+        if (fullPrecision != null) {
+            fullPrecision.add(v);
+        }
+        ensureCapacity(size + 1);
+        int list = quantizer.assign(v);
+        quantizer.encode(v, list, codes, size * quantizer.m);
+        listOf[size] = list;
+        addToList(list, size);
+        size++;
+    }
+
+    @Override
+    public void set(int slot, float[] vector) {
+        structuralMods++;
+        float[] v = normalize(vector);
+        if (quantizer == null) {
+            raw.set(slot, v);
+            return;
+        }
+        if (fullPrecision != null) {
+            fullPrecision.set(slot, v);
+        }
+        removeFromList(slot);
+        int list = quantizer.assign(v);
+        quantizer.encode(v, list, codes, slot * quantizer.m);
+        listOf[slot] = list;
+        addToList(list, slot);
+    }
+
+    @Override
+    public void swapRemove(int slot) {
+        structuralMods++;
+        if (quantizer == null) {
+            int last = raw.size() - 1;
+            if (slot != last) {
+                raw.set(slot, raw.get(last));
+            }
+            raw.remove(last);
+            return;
+        }
+        if (fullPrecision != null) {
+            fullPrecision.swapRemove(slot);
+        }
+        int last = size - 1;
+        removeFromList(slot);
+        if (slot != last) {
+            removeFromList(last);
+            int m = quantizer.m;
+            System.arraycopy(codes, last * m, codes, slot * m, m);
+            listOf[slot] = listOf[last];
+            addToList(listOf[slot], slot);
+        }
+        size--;
+    }
+
+    @Override
+    public float[] vector(int slot) {
+        if (quantizer == null) {
+            return raw.get(slot);
+        }
+        return fullPrecision != null ? fullPrecision.get(slot) : quantizer.decode(listOf[slot], codes, slot * quantizer.m);
+    }
+
+    @Override
+    public void clear() {
+        structuralMods++;
+        raw.clear();
+        if (fullPrecision != null) {
+            fullPrecision.clear();
+        }
+        quantizer = null;
+        codes = new byte[0];
+        listOf = new int[0];
+        posInList = new int[0];
+        lists = new int[0][];
+        listSizes = new int[0];
+        size = 0;
+        trainedOn = 0;
+    }
+
+    @Override
+    public Hits search(float[] query, int topK, double threshold) {
+        float[] q = normalize(query);
+        TopK top = new TopK(topK);
+
+        if (quantizer == null) {
+            for (int slot = 0; slot < raw.size(); slot++) {
+                double score = FlatVectorIndex.dot(q, raw.get(slot));
+                if (score >= threshold) {
+                    top.offer(slot, score);
+                }
+            }
+            return top.toHits(raw.size());
+        }
+
+        int m = quantizer.m;
+        int ks = quantizer.ks;
+        int scanned = 0;
+        for (int list : quantizer.probe(q, nprobe)) {
+            float[] lut = quantizer.lut(q, list);
+            int[] members = lists[list];
+            int count = listSizes[list];
+            for (int i = 0; i < count; i++) {
+                int slot = members[i];
+                int offset = slot * m;
+                float distance = 0f;
+                for (int j = 0; j < m; j++) {
+                    distance += lut[j * ks + (codes[offset + j] & 0xFF)];
+                }
+                double score = 1.0 - distance / 2.0;
+                if (score >= threshold && score > top.floor()) {
+                    top.offer(slot, score);
+                }
+            }
+            scanned += count;
+        }
+        return top.toHits(scanned);
+    }
+
+    /**
+     * Before training: references to the (never mutated) full-precision arrays. After:
+     * a copy of the spilled vectors if kept, else of the codes, decoded on read.
+     */
+    @Override
+    public Frozen freeze() {
+        if (quantizer == null) {
+            List<float[]> copy = new ArrayList<>(raw);
+            return copy::get;
+        }
+        if (fullPrecision != null) {
+            VectorSpill copy = fullPrecision.copy();
+            return new Frozen() {
+                @Override
+                public float[] vector(int slot) {
+                    return copy.get(slot);
+                }
+
+                @Override
+                public void close() {
+                    copy.close();
+                }
+            };
+        }
+        Quantizer q = quantizer;
+        byte[] frozenCodes = Arrays.copyOf(codes, size * q.m);
+        int[] frozenLists = Arrays.copyOf(listOf, size);
+        return slot -> q.decode(frozenLists[slot], frozenCodes, slot * q.m);
+    }
+
+    @Override
+    public VectorIndex emptyCopy() {
+        return new IvfPqVectorIndex(configuredLists, subQuantizers, nprobe, trainMinVectors, maxTrainSample, iterations,
+                fullPrecision != null ? fullPrecision.emptyCopy() : null);
+    }
+
+    @Override
+    public long bytesPerVector() {
+        if (quantizer == null) {
+            return raw.isEmpty() ? 0 : 16L + 4L * raw.get(0).length + 8L;
+        }
+        // code bytes + listOf + posInList + inverted-list entry
+        return quantizer.m + 12L;
+    }
+
+    // ===== Training phases (called by InMemoryVectorStore) =====
+
+    public boolean isTrained() {
+        return quantizer != null;
+    }
+
+    public boolean shouldAutoTrain() {
+        return quantizer == null && trainMinVectors > 0 && raw.size() >= trainMinVectors;
+    }
+
+    public long structuralMods() {
+        return structuralMods;
+    }
+
+    /**
+     * True while full-precision vectors are held: before the first training, or
+     * after it when they are kept in a VectorSpill.
+     */
+    public boolean canTrain() {
+        return quantizer == null ? !raw.isEmpty() : fullPrecision != null && size > 0;
+    }
+
+    /**
+     * Trained, and the stored vectors are only available as PQ reconstructions.
+     */
+    public boolean isLossy() {
+        return quantizer != null && fullPrecision == null;
+    }
+
+    /**
+     * Random sample of the stored full-precision vectors. Read lock.
+     *
+     * @throws IllegalStateException once trained without a VectorSpill (only PQ reconstructions are left)
+     */
+    public List<float[]> trainingSample() {
+        checkFullPrecision();
+        int n = size();
+        List<float[]> sample = new ArrayList<>(Math.min(n, maxTrainSample));
+        if (n <= maxTrainSample) {
+            for (int slot = 0; slot < n; slot++) {
+                sample.add(fullVector(slot));
+            }
+            return sample;
+        }
+        Random random = new Random(n);
+        for (int slot : random.ints(0, n).distinct().limit(maxTrainSample).toArray()) {
+            sample.add(fullVector(slot));
+        }
+        return sample;
+    }
+
+    /**
+     * Train coarse centroids and PQ codebooks. Pure computation, no lock needed.
+     */
+    public Quantizer fit(List<float[]> sample) {
+        int lists = configuredLists > 0 ? configuredLists : (int) Math.max(1, Math.sqrt(sample.size()));
+        return Quantizer.fit(sample, lists, subQuantizers, iterations, new Random(42));
+    }
+
+    /**
+     * Encode every stored full-precision vector with q into fresh arrays. Read lock.
+     */
+    public Encoded encodeAll(Quantizer q) {
+        checkFullPrecision();
+        Encoded encoded = new Encoded(q, size());
+        encodeRange(q, encoded, 0, size());
+        return encoded;
+    }
+
+    /**
+     * Encode vectors appended after encodeAll (no structural change in between). Write lock.
+     */
+    public void encodeAppended(Quantizer q, Encoded encoded) {
+        checkFullPrecision();
+        int from = encoded.size;
+        encoded.grow(size());
+        encodeRange(q, encoded, from, size());
+    }
+
+    private void encodeRange(Quantizer q, Encoded encoded, int from, int to) {
+        IntStream.range(from, to).parallel().forEach(slot -> {
+            float[] v = fullVector(slot);
+            int list = q.assign(v);
+            encoded.listOf[slot] = list;
+            q.encode(v, list, encoded.codes, slot * q.m);
+        });
+        encoded.size = to;
+    }
+
+    /**
+     * Switch to the new quantizer and codes in one step. Write lock.
+     * On the first training the heap copies of the full-precision vectors are dropped,
+     * after moving them to the VectorSpill if there is one.
+     */
+    public void install(Quantizer q, Encoded encoded) {
+        checkFullPrecision();
+        if (quantizer == null && fullPrecision != null) {
+            fullPrecision.clear();
+            raw.forEach(fullPrecision::add);
+        }
+        this.quantizer = q;
+        this.codes = encoded.codes;
+        this.listOf = encoded.listOf;
+        this.size = encoded.size;
+        this.posInList = new int[Math.max(16, listOf.length)];
+        this.lists = new int[q.lists][];
+        this.listSizes = new int[q.lists];
+        for (int i = 0; i < q.lists; i++) {
+            lists[i] = new int[16];
+        }
+        for (int slot = 0; slot < size; slot++) {
+            addToList(listOf[slot], slot);
+        }
+        raw.clear();
+        this.trainedOn = size;
+        this.trainedAtMillis = System.currentTimeMillis();
+    }
+
+    private float[] fullVector(int slot) {
+        return quantizer == null ? raw.get(slot) : fullPrecision.get(slot);
+    }
+
+    private void checkFullPrecision() {
+        if (isLossy()) {
+            throw new IllegalStateException("IVF-PQ index is trained without full-precision vectors; "
+                    + "clear and re-add vectors to retrain, or enable rag.ivfpq.full-precision");
+        }
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("trained", quantizer != null);
+        info.put("vectors", size());
+        info.put("bytesPerVector", bytesPerVector());
+        info.put("nprobe", nprobe);
+        info.put("autoTrainAt", trainMinVectors);
+        info.put("fullPrecision", fullPrecision != null ? fullPrecision.storageName() : "none");
+        if (fullPrecision != null) {
+            info.put("fullPrecisionBytes", fullPrecision.bytes());
+        }
+        if (quantizer != null) {
+            info.put("lists", quantizer.lists);
+            info.put("subQuantizers", quantizer.m);
+            info.put("codewords", quantizer.ks);
+            info.put("trainedOn", trainedOn);
+            info.put("trainedAtMillis", trainedAtMillis);
+        }
+        return info;
+    }
+
+    @Override
+    public void close() {
+        if (fullPrecision != null) {
+            fullPrecision.close();
+        }
+    }
+
+    // ===== Inverted list bookkeeping =====
+
+    private void ensureCapacity(int needed) {
+        if (listOf.length >= needed) {
+            return;
+        }
+        int capacity = Math.max(16, Math.max(needed, listOf.length * 2));
+        codes = Arrays.copyOf(codes, capacity * quantizer.m);
+        listOf = Arrays.copyOf(listOf, capacity);
+        posInList = Arrays.copyOf(posInList, capacity);
+    }
+
+    private void addToList(int list, int slot) {
+        int[] members = lists[list];
+        if (listSizes[list] == members.length) {
+            members = Arrays.copyOf(members, members.length * 2);
+            lists[list] = members;
+        }
+        posInList[slot] = listSizes[list];
+        members[listSizes[list]++] = slot;
+    }
+
+    private void removeFromList(int slot) {
+        int list = listOf[slot];
+        int pos = posInList[slot];
+        int lastPos = --listSizes[list];
+        int moved = lists[list][lastPos];
+        lists[list][pos] = moved;
+        posInList[moved] = pos;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(Math.max(FlatVectorIndex.dot(vector, vector), 1e-12));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * Codes and list assignments being built for a new quantizer.
+     */
+    public static final class Encoded {
+        private byte[] codes;
+        private int[] listOf;
+        private int size;
+        private final int m;
+
+        Encoded(Quantizer q, int capacity) {
+            this.m = q.m;
+            this.codes = new byte[capacity * q.m];
+            this.listOf = new int[capacity];
+        }
+
+        void grow(int capacity) {
+            if (listOf.length < capacity) {
+                codes = Arrays.copyOf(codes, capacity * m);
+                listOf = Arrays.copyOf(listOf, capacity);
+            }
+        }
+    }
+
+    /**
+     * Trained coarse centroids and per-subspace residual codebooks.
+     */
+    public static final class Quantizer {
+        final int dimension;
+        final int lists;
+        final int m;
+        final int dsub;
+        final int ks;
+        final float[] centroids; // lists * dimension
+        final float[] codebooks; // m * ks * dsub
+
+        private Quantizer(int dimension, int lists, int m, int ks, float[] centroids, float[] codebooks) {
+            this.dimension = dimension;
+            this.lists = lists;
+            this.m = m;
+            this.dsub = dimension / m;
+            this.ks = ks;
+            this.centroids = centroids;
+            this.codebooks = codebooks;
+        }
+
+        static Quantizer fit(List<float[]> sample, int lists, int subQuantizers, int iterations, Random random) {
+            int n = sample.size();
+            int d = sample.get(0).length;
+            int m = largestDivisorAtMost(d, subQuantizers);
+            int dsub = d / m;
+            int k = Math.min(lists, n);
+            int ks = Math.min(MAX_CODEWORDS, n);
+
+            float[][] data = sample.toArray(new float[0][]);
+            float[] centroids = kmeans(data, d, k, iterations, random);
+            Quantizer coarse = new Quantizer(d, k, m, ks, centroids, null);
+
+            // Residuals to the nearest centroid, split into m sub-vectors
+            float[] codebooks = new float[m * ks * dsub];
+            float[][] residuals = new float[n][];
+            for (int i = 0; i < n; i++) {
+                int list = coarse.assign(data[i]);
+                float[] r = new float[d];
+                for (int t = 0; t < d; t++) {
+                    r[t] = data[i][t] - centroids[list * d + t];
+                }
+                residuals[i] = r;
+            }
+            for (int j = 0; j < m; j++) {
+                float[][] sub = new float[n][];
+                for (int i = 0; i < n; i++) {
+                    sub[i] = Arrays.copyOfRange(residuals[i], j * dsub, (j + 1) * dsub);
+                }
+                float[] codebook = kmeans(sub, dsub, ks, iterations, random);
+                System.arraycopy(codebook, 0, codebooks, j * ks * dsub, ks * dsub);
+            }
+            return new Quantizer(d, k, m, ks, centroids, codebooks);
+        }
+
+        int assign(float[] v) {
+            return nearest(v, 0, centroids, 0, lists, dimension);
+        }
+
+        void encode(float[] v, int list, byte[] out, int offset) {
+            float[] residual = new float[dsub];
+            for (int j = 0; j < m; j++) {
+                int base = j * dsub;
+                for (int t = 0; t < dsub; t++) {
+                    residual[t] = v[base + t] - centroids[list * dimension + base + t];
+                }
+                out[offset + j] = (byte) nearest(residual, 0, codebooks, j * ks * dsub, ks, dsub);
+            }
+        }
+
+        float[] decode(int list, byte[] codes, int offset) {
+            float[] v = new float[dimension];
+            for (int j = 0; j < m; j++) {
+                int code = codes[offset + j] & 0xFF;
+                int cb = (j * ks + code) * dsub;
+                for (int t = 0; t < dsub; t++) {
+                    v[j * dsub + t] = centroids[list * dimension + j * dsub + t] + codebooks[cb + t];
+                }
+            }
+            return v;
+        }
+
+        /**
+         * The nprobe lists whose centroids are closest to q.
+         */
+        int[] probe(float[] q, int nprobe) {
+            int count = Math.min(nprobe, lists);
+            double[] distances = new double[lists];
+            Integer[] order = new Integer[lists];
+            for (int c = 0; c < lists; c++) {
+                distances[c] = squaredDistance(q, 0, centroids, c * dimension, dimension);
+                order[c] = c;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(c -> distances[c]));
+            int[] probes = new int[count];
+            for (int i = 0; i < count; i++) {
+                probes[i] = order[i];
+            }
+            return probes;
+        }
+
+        /**
+         * Asymmetric distance table: squared distance from each query residual
+         * sub-vector to every codeword, laid out [j * ks + code].
+         */
+        float[] lut(float[] q, int list) {
+            float[] table = new float[m * ks];
+            float[] residual = new float[dsub];
+            for (int j = 0; j < m; j++) {
+                int base = j * dsub;
+                for (int t = 0; t < dsub; t++) {
+                    residual[t] = q[base + t] - centroids[list * dimension + base + t];
+                }
+                for (int code = 0; code < ks; code++) {
+                    table[j * ks + code] = (float) squaredDistance(residual, 0, codebooks, (j * ks + code) * dsub, dsub);
+                }
+            }
+            return table;
+        }
+
+        private static float[] kmeans(float[][] data, int dim, int k, int iterations, Random random) {
+            int n = data.length;
+            float[] centers = new float[k * dim];
+            List<Integer> seeds = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                seeds.add(i);
+            }
+            Collections.shuffle(seeds, random);
+            for (int c = 0; c < k; c++) {
+                System.arraycopy(data[seeds.get(c)], 0, centers, c * dim, dim);
+            }
+
+            int[] assignment = new int[n];
+            for (int iter = 0; iter < iterations; iter++) {
+                float[] current = centers;
+                IntStream.range(0, n).parallel()
+                        .forEach(i -> assignment[i] = nearest(data[i], 0, current, 0, k, dim));
+
+                double[] sums = new double[k * dim];
+                int[] counts = new int[k];
+                for (int i = 0; i < n; i++) {
+                    int c = assignment[i];
+                    counts[c]++;
+                    for (int t = 0; t < dim; t++) {
+                        sums[c * dim + t] += data[i][t];
+                    }
+                }
+                float[] next = new float[k * dim];
+                for (int c = 0; c < k; c++) {
+                    if (counts[c] == 0) {
+                        // Re-seed empty clusters with a random point
+                        System.arraycopy(data[random.nextInt(n)], 0, next, c * dim, dim);
+                        continue;
+                    }
+                    for (int t = 0; t < dim; t++) {
+                        next[c * dim + t] = (float) (sums[c * dim + t] / counts[c]);
+                    }
+                }
+                centers = next;
+            }
+            return centers;
+        }
+
+        private static int nearest(float[] v, int vOffset, float[] centers, int cOffset, int k, int dim) {
+            int best = 0;
+            double bestDistance = Double.MAX_VALUE;
+            for (int c = 0; c < k; c++) {
+                double distance = squaredDistance(v, vOffset, centers, cOffset + c * dim, dim);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        private static double squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int dim) {
+            double sum = 0.0;
+            for (int t = 0; t < dim; t++) {
+                double diff = a[aOffset + t] - b[bOffset + t];
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        private static int largestDivisorAtMost(int n, int max) {
+            for (int m = Math.min(n, max); m > 1; m--) {
+                if (n % m == 0) {
+                    return m;
+                }
+            }
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.service;
+
+import com.example.demo.model.LlmCacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Exact-match cache of LLM answers.
+ * Keyed by model, options and a SHA-256 hash of the full prompt; entries expire
+ * after a TTL and the least recently used entry is evicted above max-entries.
+ *
+ * Also tracks prompt token traffic: prompt tokens (counted locally) that a hit kept
+ * from being sent at all, and the prompt tokens the provider reports in its usage
+ * metadata for the calls that were made. Provider-side prompt caching is not credited:
+ * it is not visible in the usage Spring AI exposes, and the ~200-token system prefix
+ * is below provider minimums for it anyway.
+ */
+@Service
+public class LlmResponseCache {
+
+    @Value("${rag.llm-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.llm-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${rag.llm-cache.max-entries:1000}")
+    private int maxEntries;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Metrics (guarded by this)
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long promptTokens;
+    private long savedPromptTokens;
+    private long providerPromptTokens;
+    private long providerCalls;
+    private long latencySavedNanos;
+
+    @PostConstruct
+    public void init() {
+        System.out.println("✅ LlmResponseCache initialized");
+        System.out.println("   💾 Enabled: " + enabled + ", TTL: " + ttlSeconds + "s, max entries: " + maxEntries);
+    }
+
+    /**
+     * Build the cache key for one completion request.
+     */
+    public String key(String model, Double temperature, Integer maxTokens, String systemPrompt, String userPrompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(systemPrompt.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(userPrompt.getBytes(StandardCharsets.UTF_8));
+            return model + "|" + temperature + "|" + maxTokens + "|" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Look up a cached answer. Records the prompt's token accounting either way.
+     *
+     * @param totalTokens tokens of the whole prompt (local count)
+     */
+    public synchronized Optional<String> get(String key, int totalTokens) {
+        promptTokens += totalTokens;
+        Entry entry = enabled ? entries.get(key) : null;
+        if (entry != null && entry.expiresAtMillis < System.currentTimeMillis()) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        savedPromptTokens += totalTokens;
+        latencySavedNanos += entry.generationNanos;
+        return Optional.of(entry.answer);
+    }
+
+    /**
+     * Record the prompt tokens the provider billed for one call (usage metadata; null if not reported).
+     */
+    public synchronized void recordProviderUsage(Long promptTokens) {
+        if (promptTokens != null) {
+            providerPromptTokens += promptTokens;
+            providerCalls++;
+        }
+    }
+
+    /**
+     * Store a freshly generated answer with the time it took to produce.
+     */
+    public synchronized void put(String key, String answer, long generationNanos) {
+        if (!enabled || answer == null) {
+            return;
+        }
+        entries.put(key, new Entry(answer, System.currentTimeMillis() + ttlSeconds * 1000L, generationNanos));
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized LlmCacheStats getStats() {
+        long lookups = hits + misses;
+        return new LlmCacheStats(
+                enabled,
+                entries.size(),
+                hits,
+                misses,
+                evictions,
+                lookups == 0 ? 0.0 : (double) hits / lookups,
+                promptTokens == 0 ? 0.0 : (double) savedPromptTokens / promptTokens,
+                providerPromptTokens,
+                providerCalls,
+                latencySavedNanos / 1_000_000L);
+    }
+
+    private record Entry(String answer, long expiresAtMillis, long generationNanos) {
+    }
+}
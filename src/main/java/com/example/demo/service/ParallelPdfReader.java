@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Parallel page-range PDF text extraction with PDFBox.
+ *
+ * The PDF is split into page ranges and every range is extracted on its own
+ * PDDocument handle (opened over a shared RandomAccessReadBuffer of the upload bytes),
+ * so ranges run on separate cores without sharing PDFBox state.
+ * Ranges are handed to the sink in page order as soon as they are ready,
+ * and at most a bounded number of ranges are in flight to stay within the memory cap.
+ */
+@Component
+public class ParallelPdfReader {
+
+    // Same metadata keys as Spring AI PagePdfDocumentReader
+    public static final String METADATA_PAGE_NUMBER = "page_number";
+    public static final String METADATA_END_PAGE_NUMBER = "end_page_number";
+    public static final String METADATA_FILE_NAME = "file_name";
+
+    @Value("${rag.pdf.parallelism:0}")
+    private int parallelism;
+
+    @Value("${rag.pdf.pages-per-range:16}")
+    private int pagesPerRange;
+
+    @Value("${rag.pdf.max-memory-mb:256}")
+    private long maxMemoryMb;
+
+    private ExecutorService executor;
+    private int threads;
+
+    @PostConstruct
+    public void init() {
+        this.threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pdf-extract-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        System.out.println("✅ ParallelPdfReader initialized");
+        System.out.println("   🧵 Threads: " + threads + ", pages/range: " + pagesPerRange + ", memory cap: " + maxMemoryMb + "MB");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Extract all pages of a PDF, streaming page Documents to the sink range by range.
+     * The sink is always called on the caller's thread, in page order.
+     *
+     * @param pdf raw PDF bytes
+     * @param fileName original file name (stored in metadata)
+     * @param sink receives the non-empty pages of each range
+     * @return number of pages extracted (non-empty)
+     */
+    public int read(byte[] pdf, String fileName, Consumer<List<Document>> sink) throws Exception {
+        int pageCount;
+        try (PDDocument probe = open(pdf, maxMemoryBytes())) {
+            pageCount = probe.getNumberOfPages();
+        } catch (InvalidPasswordException e) {
+            // Owner-password-only PDFs open with the empty password; a user password cannot be supplied here
+            throw new IllegalArgumentException("PDF is password-protected: " + fileName, e);
+        }
+        if (pageCount == 0) {
+            return 0;
+        }
+
+        int rangeSize = Math.max(1, pagesPerRange);
+        int rangeCount = (pageCount + rangeSize - 1) / rangeSize;
+
+        // Every in-flight range holds its own parsed document; size the window so the
+        // estimated footprint (roughly one PDF-sized heap per handle) stays within the cap.
+        long budget = maxMemoryBytes();
+        long perHandle = Math.max(1L, pdf.length);
+        int inFlight = (int) Math.max(1, Math.min(Math.min(threads, rangeCount), budget / perHandle));
+        long cachePerHandle = Math.max(1L, budget / inFlight);
+
+        System.out.println("   📑 " + pageCount + " pages → " + rangeCount + " ranges, " + inFlight + " in flight");
+
+        Deque<Future<List<Document>>> pending = new ArrayDeque<>();
+        int nextRange = 0;
+        int extracted = 0;
+        try {
+            while (nextRange < rangeCount && pending.size() < inFlight) {
+                pending.add(submitRange(pdf, fileName, nextRange++, rangeSize, pageCount, cachePerHandle));
+            }
+            while (!pending.isEmpty()) {
+                List<Document> pages = await(pending.poll());
+                if (nextRange < rangeCount) {
+                    pending.add(submitRange(pdf, fileName, nextRange++, rangeSize, pageCount, cachePerHandle));
+                }
+                extracted += pages.size();
+                if (!pages.isEmpty()) {
+                    sink.accept(pages);
+                }
+            }
+        } finally {
+            pending.forEach(f -> f.cancel(true));
+        }
+        return extracted;
+    }
+
+    private Future<List<Document>> submitRange(byte[] pdf, String fileName, int range, int rangeSize,
+                                               int pageCount, long cacheBytes) {
+        int firstPage = range * rangeSize + 1; // PDFTextStripper pages are 1-based
+        int lastPage = Math.min(pageCount, firstPage + rangeSize - 1);
+        return executor.submit(() -> extractRange(pdf, fileName, firstPage, lastPage, cacheBytes));
+    }
+
+    private List<Document> extractRange(byte[] pdf, String fileName, int firstPage, int lastPage,
+                                        long cacheBytes) throws Exception {
+        List<Document> pages = new ArrayList<>(lastPage - firstPage + 1);
+        try (PDDocument document = open(pdf, cacheBytes)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);
+            for (int page = firstPage; page <= lastPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(document).trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> metadata = new HashMap<>();
+                metadata.put(METADATA_PAGE_NUMBER, page);
+                metadata.put(METADATA_END_PAGE_NUMBER, page);
+                if (fileName != null) {
+                    metadata.put(METADATA_FILE_NAME, fileName);
+                }
+                pages.add(new Document(text, metadata));
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Open an independent document handle over the shared bytes.
+     * RandomAccessReadBuffer wraps the array without copying it; stream caches
+     * above cacheBytes spill to temp files.
+     */
+    private PDDocument open(byte[] pdf, long cacheBytes) throws Exception {
+        return Loader.loadPDF(new RandomAccessReadBuffer(pdf), "", null, null,
+                MemoryUsageSetting.setupMixed(cacheBytes).streamCache);
+    }
+
+    private List<Document> await(Future<List<Document>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private long maxMemoryBytes() {
+        return Math.max(1L, maxMemoryMb) * 1024L * 1024L;
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.demo.service;
+
+import com.example.demo.model.PrefetchStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Speculative retrieval while the user is typing.
+ *
+ * The chat UI posts debounced partial questions to /api/rag/prefetch; each one is
+ * embedded and searched right away and the query vector + candidate chunks are kept
+ * for a short TTL. When the question is finally submitted, RagService.ask reuses the
+ * warm entry if its normalized text matches exactly or within a small edit distance,
+ * skipping the embedding call and the vector search. A near match must contain the same
+ * numbers in the same order ("quý 1" never reuses "quý 3", nor "2023" reuse "2024").
+ *
+ * Entries are dropped whenever the index changes. Every invalidation bumps a generation
+ * counter; a prefetch that started before it is discarded instead of stored, so results
+ * computed against the old index are never served.
+ */
+@Service
+public class QueryPrefetchService {
+
+    private final HuggingFaceEmbeddingModelAdapter embeddingModel;
+    private final SearchableVectorStore vectorStore;
+
+    @Value("${rag.prefetch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.prefetch.ttl-seconds:120}")
+    private long ttlSeconds;
+
+    @Value("${rag.prefetch.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${rag.prefetch.max-edit-distance:2}")
+    private int maxEditDistance;
+
+    @Value("${rag.prefetch.min-chars:8}")
+    private int minChars;
+
+    @Value("${rag.retrieval.top-k:5}")
+    private int topK;
+
+    @Value("${rag.retrieval.min-score:0.35}")
+    private double minScore;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long generation;
+
+    // Metrics (guarded by this)
+    private long prefetches;
+    private long exactHits;
+    private long nearHits;
+    private long misses;
+    private long latencySavedNanos;
+
+    public QueryPrefetchService(HuggingFaceEmbeddingModelAdapter embeddingModel, SearchableVectorStore vectorStore) {
+        this.embeddingModel = embeddingModel;
+        this.vectorStore = vectorStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        System.out.println("✅ QueryPrefetchService initialized");
+        System.out.println("   🔮 Enabled: " + enabled + ", TTL: " + ttlSeconds + "s, max edit distance: " + maxEditDistance);
+    }
+
+    /**
+     * Embed and search a partial question ahead of submit.
+     *
+     * @return true if a new entry was computed, false if skipped (disabled, too short, already warm)
+     */
+    public boolean prefetch(String partialQuestion) {
+        String normalized = normalize(partialQuestion);
+        if (!enabled || normalized.length() < minChars) {
+            return false;
+        }
+        long startedAt;
+        synchronized (this) {
+            Entry existing = entries.get(normalized);
+            if (existing != null && !existing.isExpired()) {
+                return false;
+            }
+            startedAt = generation;
+        }
+
+        long t0 = System.nanoTime();
+        float[] vector = embeddingModel.embed(partialQuestion);
+        List<Document> results = vectorStore.similaritySearch(vector, topK, minScore);
+        long costNanos = System.nanoTime() - t0;
+
+        synchronized (this) {
+            if (generation != startedAt) {
+                return false; // index changed while searching
+            }
+            prefetches++;
+            entries.put(normalized, new Entry(vector, results, System.currentTimeMillis() + ttlSeconds * 1000L, costNanos));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Warm retrieval for a submitted question: exact normalized match first,
+     * then the freshest entry within max-edit-distance.
+     */
+    public synchronized Optional<Prefetched> lookup(String question) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String normalized = normalize(question);
+        Entry entry = entries.get(normalized);
+        boolean exact = entry != null && !entry.isExpired();
+        if (!exact) {
+            entry = null;
+            long bestExpiry = Long.MIN_VALUE;
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                Entry value = candidate.getValue();
+                if (!value.isExpired() && value.expiresAtMillis > bestExpiry
+                        && canReuse(normalized, candidate.getKey(), maxEditDistance)) {
+                    entry = value;
+                    bestExpiry = value.expiresAtMillis;
+                }
+            }
+        }
+        if (entry == null) {
+            misses++;
+            return Optional.empty();
+        }
+        if (exact) {
+            exactHits++;
+        } else {
+            nearHits++;
+        }
+        latencySavedNanos += entry.costNanos;
+        return Optional.of(new Prefetched(entry.vector, entry.results, exact));
+    }
+
+    /**
+     * Drop all entries; called whenever the index content changes.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized PrefetchStats getStats() {
+        long hits = exactHits + nearHits;
+        long lookups = hits + misses;
+        return new PrefetchStats(
+                enabled,
+                entries.size(),
+                prefetches,
+                exactHits,
+                nearHits,
+                misses,
+                lookups == 0 ? 0.0 : (double) hits / lookups,
+                latencySavedNanos / 1_000_000L,
+                hits == 0 ? 0.0 : latencySavedNanos / 1_000_000.0 / hits);
+    }
+
+    /**
+     * Case, accent-composition, punctuation and whitespace insensitive form.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[\\p{Punct}\\s]+", " ")
+                .trim();
+    }
+
+    /**
+     * Near-match rule: within max edits and with identical numbers, since a single
+     * changed digit (quarter, year, article number) usually changes what is asked.
+     */
+    static boolean canReuse(String question, String prefetched, int maxEditDistance) {
+        return numbers(question).equals(numbers(prefetched))
+                && withinEditDistance(question, prefetched, maxEditDistance);
+    }
+
+    /**
+     * Digit runs in order, e.g. "quý 1 năm 2023, 12.5%" → [1, 2023, 12, 5].
+     */
+    static List<String> numbers(String text) {
+        List<String> numbers = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isDigit(text.charAt(i))) {
+                i++;
+            }
+            numbers.add(text.substring(start, i));
+        }
+        return numbers;
+    }
+
+    /**
+     * Banded Levenshtein check: only cells within max of the diagonal are computed,
+     * and it stops as soon as a whole row exceeds max.
+     */
+    static boolean withinEditDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return false;
+        }
+        int inf = max + 1;
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j <= max ? j : inf;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            Arrays.fill(curr, inf);
+            curr[0] = i <= max ? i : inf;
+            int rowMin = curr[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                curr[j] = Math.min(value, inf);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > max) {
+                return false;
+            }
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return prev[b.length()] <= max;
+    }
+
+    /**
+     * Reusable retrieval: query vector and candidate chunks (already top-K, above min-score).
+     */
+    public record Prefetched(float[] vector, List<Document> results, boolean exact) {
+    }
+
+    private record Entry(float[] vector, List<Document> results, long expiresAtMillis, long costNanos) {
+        boolean isExpired() {
+            return expiresAtMillis < System.currentTimeMillis();
+        }
+    }
+}
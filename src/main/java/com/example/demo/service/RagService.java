@@ -1,40 +1,78 @@
 package com.example.demo.service;
 
 import com.example.demo.model.AskResponse;
+import com.example.demo.model.BatchAnswer;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.openai.OpenAiChatOptions;
-import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Unified RAG service using pure Spring AI framework.
  * 
  * Pipeline:
- * 1. PDF → PagePdfDocumentReader (Spring AI)
- * 2. Documents → TokenTextSplitter (Spring AI)
- * 3. Chunks → HuggingFaceEmbeddingModelAdapter → SimpleVectorStore (Spring AI)
- * 4. Query → VectorStore.similaritySearch (auto-embed via adapter)
- * 5. Context → ChatClient.prompt().call() (Pure Spring AI)
+ * 1. PDF → ParallelPdfReader (PDFBox, page ranges extracted in parallel)
+ * 2. Documents → SentenceWindowChunker (sentence windows, cached tokenizer), fed range by range
+ * 3. Chunks → HuggingFaceEmbeddingModelAdapter → InMemoryVectorStore (or ShardedVectorStore in cluster mode)
+ * 4. Query → warm prefetch (QueryPrefetchService) or embed via adapter + VectorStore.similaritySearch
+ * 5. Stable system prompt + context/question → LlmResponseCache → ChatClient.prompt().call() (Pure Spring AI)
+ *
+ * askBatch: all questions embedded together → one batch search pass → LLM calls on a
+ * bounded pool (rag.batch.max-concurrency), results delivered as each completes.
+ *
+ * Each step adds its nanoTime duration to RequestTimings.current() when the
+ * controller is timing the request (no-op otherwise).
  */
 @Service
 public class RagService {
 
+    /**
+     * Fixed instructions sent first on every request, so the prompt prefix is identical
+     * across questions (a prerequisite for provider-side prompt caching, though at ~200 tokens
+     * it is below the usual minimum prefix length for it).
+     * Retrieved context goes into the user message after it.
+     */
+    private static final String SYSTEM_PROMPT = """
+            Bạn là trợ lý AI phân tích tài liệu PDF thông minh.
+            
+            NHIỆM VỤ:
+            Trả lời câu hỏi dựa HOÀN TOÀN trên context được cung cấp trong tin nhắn của người dùng
+            (nằm giữa === CONTEXT START === và === CONTEXT END ===).
+            
+            QUY TẮC BẮT BUỘC:
+            1. CHỈ sử dụng thông tin có trong context
+            2. Nếu không có đủ thông tin → trả lời: "Tôi không tìm thấy thông tin để trả lời câu hỏi này trong tài liệu"
+            3. Trả lời bằng tiếng Việt, rõ ràng và chính xác
+            4. Trích dẫn trực tiếp từ context nếu có thể
+            5. KHÔNG bịa đặt hoặc suy luận ngoài context
+            """;
+
+    private static final int SYSTEM_PROMPT_TOKENS = TokenCounter.count(SYSTEM_PROMPT);
+
     private final ChatClient chatClient;
-    private final VectorStore vectorStore;
-    private TokenTextSplitter textSplitter;
-    
-    // Track total vectors stored
-    private int totalVectors = 0;
+    private final SearchableVectorStore vectorStore;
+    private final ParallelPdfReader pdfReader;
+    private final LlmResponseCache responseCache;
+    private final QueryPrefetchService prefetchService;
+    private final HuggingFaceEmbeddingModelAdapter embeddingModel;
+    private final TimingAggregator timingAggregator;
+    private SentenceWindowChunker textSplitter;
+    private ExecutorService batchExecutor;
 
     @Value("${spring.ai.openai.chat.options.model:meta-llama/llama-3.1-70b-instruct}")
     private String chatModel;
@@ -57,22 +95,49 @@ public class RagService {
     @Value("${rag.chunk.overlap:100}")
     private int chunkOverlap;
 
-    public RagService(ChatClient chatClient, VectorStore vectorStore) {
+    @Value("${rag.batch.max-concurrency:8}")
+    private int batchMaxConcurrency;
+
+    @Value("${rag.batch.max-questions:500}")
+    private int batchMaxQuestions;
+
+    public RagService(@Lazy ChatClient chatClient, SearchableVectorStore vectorStore, ParallelPdfReader pdfReader,
+                      LlmResponseCache responseCache, QueryPrefetchService prefetchService,
+                      HuggingFaceEmbeddingModelAdapter embeddingModel, TimingAggregator timingAggregator) {
         this.chatClient = chatClient;
         this.vectorStore = vectorStore;
+        this.pdfReader = pdfReader;
+        this.responseCache = responseCache;
+        this.prefetchService = prefetchService;
+        this.embeddingModel = embeddingModel;
+        this.timingAggregator = timingAggregator;
     }
     
     @PostConstruct
     public void init() {
-        // Initialize TokenTextSplitter after @Value properties are injected
-        // Parameters: defaultChunkSize, minChunkSizeChars, minChunkLengthToEmbed, maxNumChunks, keepSeparator
-        this.textSplitter = new TokenTextSplitter(chunkSize, chunkOverlap, 5, 10000, true);
+        // Initialize chunker after @Value properties are injected
+        // Parameters: chunkSize (tokens), chunkOverlap (tokens)
+        this.textSplitter = new SentenceWindowChunker(chunkSize, chunkOverlap);
+
+        // Shared by all batch requests, so the limit on concurrent LLM calls is global
+        AtomicInteger threadCount = new AtomicInteger();
+        this.batchExecutor = Executors.newFixedThreadPool(Math.max(1, batchMaxConcurrency), r -> {
+            Thread t = new Thread(r, "rag-batch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
         
         System.out.println("✅ RagService initialized with Spring AI components");
-        System.out.println("   📄 PDF Reader: PagePdfDocumentReader");
-        System.out.println("   ✂️  Text Splitter: TokenTextSplitter (" + chunkSize + " chars, " + chunkOverlap + " overlap)");
-        System.out.println("   🗄️  Vector Store: SimpleVectorStore");
+        System.out.println("   📄 PDF Reader: ParallelPdfReader (PDFBox page ranges)");
+        System.out.println("   ✂️  Text Splitter: SentenceWindowChunker (" + chunkSize + " tokens, " + textSplitter.getOverlap() + " overlap)");
+        System.out.println("   🗄️  Vector Store: " + vectorStore.getClass().getSimpleName());
         System.out.println("   🤖 Chat Model: " + chatModel);
+        System.out.println("   📦 Batch: up to " + batchMaxQuestions + " questions, " + batchMaxConcurrency + " concurrent LLM calls");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
     }
 
     /**
@@ -86,32 +151,33 @@ public class RagService {
         System.out.println("📄 Starting Spring AI PDF indexing: " + file.getOriginalFilename());
         System.out.println("=".repeat(80));
         
-        // 1. Load PDF using Spring AI PagePdfDocumentReader
-        System.out.println("📖 Step 1: Loading PDF with PagePdfDocumentReader...");
-        
-        // Convert MultipartFile to Resource
-        ByteArrayResource resource = new ByteArrayResource(file.getBytes()) {
-            @Override
-            public String getFilename() {
-                return file.getOriginalFilename();
-            }
-        };
-        
-        PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(resource);
-        List<Document> documents = pdfReader.get();
-        
-        System.out.println("   ✅ Loaded " + documents.size() + " pages from PDF");
+        // 1. Extract pages in parallel and 2. split each page range as soon as it is ready
+        System.out.println("📖 Step 1: Extracting pages with ParallelPdfReader...");
+        System.out.println("✂️  Step 2: Splitting page ranges with SentenceWindowChunker as they arrive...");
+
+        RequestTimings timings = RequestTimings.current();
+        List<Document> chunks = new ArrayList<>();
+        long[] chunkNanos = {0};
+        long readStart = System.nanoTime();
+        int pages = pdfReader.read(file.getBytes(), file.getOriginalFilename(), pageBatch -> {
+            long c0 = System.nanoTime();
+            chunks.addAll(textSplitter.apply(pageBatch));
+            chunkNanos[0] += System.nanoTime() - c0;
+        });
+        if (timings != null) {
+            // Chunking runs inside the read loop, so extraction is the remainder
+            timings.addExtract(System.nanoTime() - readStart - chunkNanos[0]);
+            timings.addChunk(chunkNanos[0]);
+        }
 
-        if (documents.isEmpty()) {
+        System.out.println("   ✅ Loaded " + pages + " pages from PDF");
+
+        if (pages == 0) {
             throw new Exception("No pages extracted from PDF");
         }
 
-        // 2. Split documents into chunks using TokenTextSplitter
-        System.out.println("✂️  Step 2: Splitting into chunks with TokenTextSplitter...");
-        
-        List<Document> chunks = textSplitter.apply(documents);
-        
-        System.out.println("   ✅ Created " + chunks.size() + " chunks");
+        System.out.println("   ✅ Created " + chunks.size() + " chunks ("
+                + String.format("%.1f", textSplitter.getThroughputMbPerSecond()) + " MB/s chunking throughput)");
 
         if (chunks.isEmpty()) {
             throw new Exception("No chunks created from documents");
@@ -126,13 +192,18 @@ public class RagService {
         }
 
         // 3. Add chunks to VectorStore (auto-embed via HuggingFaceEmbeddingModelAdapter)
-        System.out.println("🔄 Step 3: Adding chunks to SimpleVectorStore (auto-embedding via HuggingFace)...");
+        System.out.println("🔄 Step 3: Adding chunks to " + vectorStore.getClass().getSimpleName() + " (auto-embedding via HuggingFace)...");
         
+        long embedBefore = timings != null ? timings.embedNanos() : 0;
+        long addStart = System.nanoTime();
         vectorStore.add(chunks);
-        totalVectors += chunks.size();
+        if (timings != null) {
+            timings.addIndex(System.nanoTime() - addStart - (timings.embedNanos() - embedBefore));
+        }
+        prefetchService.invalidate();
         
         System.out.println("   ✅ Indexed " + chunks.size() + " chunks successfully");
-        System.out.println("   📊 Total vectors in store: " + totalVectors);
+        System.out.println("   📊 Total vectors in store: " + vectorStore.size());
         System.out.println("=".repeat(80));
         System.out.println("✅ PDF indexing complete!\n");
 
@@ -152,17 +223,144 @@ public class RagService {
 
 
         // ==========================================================
-        // 1. Retrieve relevant documents using Spring AI VectorStore
-        System.out.println("🔍 Step 1: Similarity search with VectorStore (auto-embed query)...");
-        
-        SearchRequest searchRequest = SearchRequest.query(question)
-                .withTopK(topK)
-                .withSimilarityThreshold(minScore);
-        
-        List<Document> results = vectorStore.similaritySearch(searchRequest);
+        // 1. Retrieve relevant documents: reuse prefetched candidates, else embed + VectorStore search
+        RequestTimings timings = RequestTimings.current();
+        List<Document> results;
+        long lookupStart = System.nanoTime();
+        Optional<QueryPrefetchService.Prefetched> warm = prefetchService.lookup(question);
+        if (timings != null) {
+            // A hit's retrieval cost is the lookup itself
+            timings.setPrefetchHit(warm.isPresent());
+            timings.addSearch(System.nanoTime() - lookupStart);
+        }
+        if (warm.isPresent()) {
+            System.out.println("🔍 Step 1: Reusing prefetched retrieval (" + (warm.get().exact() ? "exact" : "near") + " match)...");
+            results = warm.get().results();
+        } else {
+            System.out.println("🔍 Step 1: Embedding query and searching VectorStore...");
+
+            float[] queryVector = embeddingModel.embed(question);
+            long searchStart = System.nanoTime();
+            results = vectorStore.similaritySearch(queryVector, topK, minScore);
+            if (timings != null) {
+                timings.addSearch(System.nanoTime() - searchStart);
+            }
+        }
         
         System.out.println("   ✅ Found " + results.size() + " relevant documents");
 
+        return answer(question, results);
+    }
+
+    /**
+     * Answer many questions with shared retrieval.
+     * Questions are embedded together (adapter → embedBatch) and searched in one batch pass
+     * over the store; the LLM calls then run concurrently, at most rag.batch.max-concurrency
+     * at a time, and each result goes to sink as soon as it completes (in completion order).
+     * Retrieval runs on the batch pool too, so the caller gets the future back immediately.
+     * A failing question yields a BatchAnswer with error set; the others still complete.
+     * If sink throws (client gone), the returned future fails and the remaining questions are dropped.
+     *
+     * Each question is recorded in TimingAggregator as "ask-batch" (queue wait counts from
+     * receivedAtNanos), the shared embed + search once as "ask-batch-retrieval".
+     *
+     * @return completes when every question has been delivered to sink; cancelling it
+     *         (client disconnect, timeout) skips every question whose LLM call has not started
+     */
+    public CompletableFuture<Void> askBatch(List<String> questions, long receivedAtNanos, Consumer<BatchAnswer> sink) {
+        if (questions.size() > batchMaxQuestions) {
+            throw new IllegalArgumentException("Batch has " + questions.size() + " questions, max is " + batchMaxQuestions);
+        }
+        System.out.println("\n" + "=".repeat(80));
+        System.out.println("📦 Batch of " + questions.size() + " questions");
+        System.out.println("=".repeat(80));
+
+        CompletableFuture<Void> batch = new CompletableFuture<>();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        batch.whenComplete((done, error) -> {
+            if (error != null) {
+                // Cancelled or failed: queued tasks are dropped before they reach the LLM
+                synchronized (pending) {
+                    pending.forEach(task -> task.cancel(false));
+                }
+                System.out.println("   ⛔ Batch stopped: " + error);
+            }
+        });
+
+        CompletableFuture<List<List<Document>>> retrieval = CompletableFuture.supplyAsync(() -> {
+            RequestTimings timings = RequestTimings.begin(receivedAtNanos, false);
+            try {
+                long t0 = System.nanoTime();
+                List<float[]> vectors = embeddingModel.embed(questions);
+                long t1 = System.nanoTime();
+                List<List<Document>> retrieved = vectorStore.similaritySearchBatch(vectors, topK, minScore);
+                long t2 = System.nanoTime();
+                timings.addSearch(t2 - t1);
+                System.out.println("   ✅ Embedded in " + (t1 - t0) / 1_000_000 + "ms, searched in " + (t2 - t1) / 1_000_000 + "ms");
+                return retrieved;
+            } finally {
+                timingAggregator.record("ask-batch-retrieval", timings.finish());
+            }
+        }, batchExecutor);
+        track(pending, retrieval);
+
+        retrieval.whenComplete((retrieved, error) -> {
+            if (error != null) {
+                batch.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                return;
+            }
+            if (batch.isDone()) {
+                return;
+            }
+            System.out.println("   💬 Dispatching LLM calls (max " + batchMaxConcurrency + " concurrent)...");
+            CompletableFuture<?>[] tasks = new CompletableFuture<?>[questions.size()];
+            for (int i = 0; i < questions.size(); i++) {
+                int index = i;
+                String question = questions.get(i);
+                tasks[i] = CompletableFuture.runAsync(() -> {
+                    if (batch.isDone()) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    RequestTimings timings = RequestTimings.begin(receivedAtNanos, false);
+                    BatchAnswer result;
+                    try {
+                        AskResponse response = answer(question, retrieved.get(index));
+                        result = new BatchAnswer(index, question, response.getAnswer(), response.getSources(), null,
+                                (System.nanoTime() - start) / 1_000_000);
+                    } catch (Exception e) {
+                        result = new BatchAnswer(index, question, null, null, e.getMessage(),
+                                (System.nanoTime() - start) / 1_000_000);
+                    } finally {
+                        timingAggregator.record("ask-batch", timings.finish());
+                    }
+                    if (batch.isDone()) {
+                        return;
+                    }
+                    try {
+                        sink.accept(result);
+                    } catch (RuntimeException e) {
+                        batch.completeExceptionally(e);
+                    }
+                }, batchExecutor);
+                track(pending, tasks[i]);
+            }
+            CompletableFuture.allOf(tasks).whenComplete((all, failure) -> batch.complete(null));
+        });
+        return batch;
+    }
+
+    private static void track(List<CompletableFuture<?>> pending, CompletableFuture<?> task) {
+        synchronized (pending) {
+            pending.add(task);
+        }
+    }
+
+    /**
+     * Steps 2-4 of ask: build context from retrieved chunks, check the response cache,
+     * call the LLM. Safe to call concurrently (see askBatch).
+     */
+    private AskResponse answer(String question, List<Document> results) {
         if (results.isEmpty()) {
             System.out.println("   ⚠️  No results above similarity threshold (" + minScore + ")");
             return new AskResponse(
@@ -173,18 +371,7 @@ public class RagService {
 
         // Log top result similarity score
         if (!results.isEmpty()) {
-            Document topDoc = results.get(0);
-            // Spring AI stores similarity score in metadata
-            Object scoreObj = topDoc.getMetadata().get("distance");
-            if (scoreObj == null) {
-                scoreObj = topDoc.getMetadata().get("score");
-            }
-            
-            if (scoreObj != null) {
-                double score = scoreObj instanceof Double ? (Double) scoreObj : 
-                              scoreObj instanceof Float ? ((Float) scoreObj).doubleValue() : 0.0;
-                System.out.println("   🏆 Top result similarity: " + String.format("%.3f", score));
-            }
+            System.out.println("   🏆 Top result similarity: " + String.format("%.3f", similarity(results.get(0))));
         }
 
         // =========================================
@@ -197,14 +384,7 @@ public class RagService {
         for (int i = 0; i < results.size(); i++) {
             Document doc = results.get(i);
             
-            // Extract similarity score from metadata
-            Object scoreObj = doc.getMetadata().get("distance");
-            if (scoreObj == null) {
-                scoreObj = doc.getMetadata().get("score");
-            }
-            
-            double score = scoreObj instanceof Double ? (Double) scoreObj : 
-                          scoreObj instanceof Float ? ((Float) scoreObj).doubleValue() : 0.0;
+            double score = similarity(doc);
 
             contextBuilder.append("\n[Chunk #").append(i)
                     .append(" / similarity=").append(String.format("%.3f", score))
@@ -216,33 +396,37 @@ public class RagService {
         }
 
         String context = contextBuilder.toString();
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.setContextTokens(TokenCounter.count(context));
+        }
         System.out.println("   ✅ Context built with " + results.size() + " chunks");
         System.out.println("   � Total context length: " + context.length() + " characters");
 
 
         // ==========================================================   
-        // 3. Build system prompt with context (Spring AI PromptBuilder pattern)
+        // 3. Build prompt: stable system prefix + variable context/question
         System.out.println("🤖 Step 3: Building prompt with ChatClient DSL...");
-        
-        String systemPrompt = """
-                Bạn là trợ lý AI phân tích tài liệu PDF thông minh.
-                
-                NHIỆM VỤ:
-                Trả lời câu hỏi dựa HOÀN TOÀN trên context được cung cấp bên dưới.
-                
-                QUY TẮC BẮT BUỘC:
-                1. CHỈ sử dụng thông tin có trong context
-                2. Nếu không có đủ thông tin → trả lời: "Tôi không tìm thấy thông tin để trả lời câu hỏi này trong tài liệu"
-                3. Trả lời bằng tiếng Việt, rõ ràng và chính xác
-                4. Trích dẫn trực tiếp từ context nếu có thể
-                5. KHÔNG bịa đặt hoặc suy luận ngoài context
-                
+
+        String userPrompt = """
                 === CONTEXT START ===
                 %s
                 === CONTEXT END ===
                 
-                Bây giờ hãy trả lời câu hỏi của người dùng.
-                """.formatted(context);
+                Câu hỏi: %s
+                """.formatted(context, question);
+
+        String cacheKey = responseCache.key(chatModel, temperature, maxTokens, SYSTEM_PROMPT, userPrompt);
+        int promptTokens = SYSTEM_PROMPT_TOKENS + TokenCounter.count(userPrompt);
+        Optional<String> cached = responseCache.get(cacheKey, promptTokens);
+        if (timings != null) {
+            timings.setCacheHit(cached.isPresent());
+        }
+        if (cached.isPresent()) {
+            System.out.println("   💾 Answer served from LLM response cache");
+            System.out.println("=".repeat(80) + "\n");
+            return new AskResponse(cached.get(), sources);
+        }
 
         // =====================================================
         // 4. Generate answer using Spring AI ChatClient - PURE FRAMEWORK
@@ -252,17 +436,45 @@ public class RagService {
         System.out.println("   📊 Max Tokens: " + maxTokens);
         
         try {
-            // DÙNG THUẦN SPRING AI CHATCLIENT
-            String answer = chatClient.prompt()
-                    .system(systemPrompt)       // System prompt với context từ PDF
-                    .user(question)             // Câu hỏi của user
-                    .options(OpenAiChatOptions.builder()
-                            .withModel(chatModel)
-                            .withTemperature(temperature)
-                            .withMaxTokens(maxTokens)
-                            .build())
-                    .call()                     // Spring AI handles HTTP internally ---> call API
-                    .content();                 // Extract response content
+            long t0 = System.nanoTime();
+            OpenAiChatOptions options = OpenAiChatOptions.builder()
+                    .withModel(chatModel)
+                    .withTemperature(temperature)
+                    .withMaxTokens(maxTokens)
+                    .withStreamUsage(true)      // stream_options.include_usage: final chunk carries usage
+                    .build();
+
+            // Always streamed, so every request is measured the same way (TTFT included)
+            long[] firstToken = {0};
+            StringBuilder streamed = new StringBuilder();
+            Long[] usage = {null};
+            chatClient.prompt()
+                    .system(SYSTEM_PROMPT)      // Prefix cố định, giống nhau mọi request
+                    .user(userPrompt)           // Context từ PDF + câu hỏi của user
+                    .options(options)
+                    .stream()                   // Spring AI handles HTTP internally ---> call API (SSE)
+                    .chatResponse()             // Chunks + usage metadata
+                    .doOnNext(response -> {
+                        String token = contentOf(response);
+                        if (firstToken[0] == 0 && !token.isEmpty()) {
+                            firstToken[0] = System.nanoTime();
+                        }
+                        streamed.append(token);
+                        Long promptTokensUsed = promptTokensOf(response);
+                        if (promptTokensUsed != null) {
+                            usage[0] = promptTokensUsed;
+                        }
+                    })
+                    .blockLast(Duration.ofSeconds(120));
+            String answer = streamed.length() > 0 ? streamed.toString() : null;
+            responseCache.recordProviderUsage(usage[0]);
+            Long ttftNanos = firstToken[0] == 0 ? null : firstToken[0] - t0;
+
+            long llmNanos = System.nanoTime() - t0;
+            if (timings != null) {
+                timings.setLlm(ttftNanos, llmNanos);
+            }
+            responseCache.put(cacheKey, answer, llmNanos);
 
             System.out.println("   ✅ Answer generated successfully");
             System.out.println("   📝 Answer length: " + (answer != null ? answer.length() : 0) + " characters");
@@ -280,21 +492,68 @@ public class RagService {
         }
     }
 
+    private static String contentOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String content = response.getResult().getOutput().getContent();
+        return content != null ? content : "";
+    }
+
+    /**
+     * Prompt tokens reported by the provider (usage metadata), or null if the response carries none.
+     */
+    private static Long promptTokensOf(ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return null;
+        }
+        Number tokens = response.getMetadata().getUsage().getPromptTokens();
+        return tokens != null && tokens.longValue() > 0 ? tokens.longValue() : null;
+    }
+
+    /**
+     * Extract similarity score from search result metadata.
+     * InMemoryVectorStore sets "score" (cosine similarity) and "distance" (1 - score).
+     */
+    private double similarity(Document doc) {
+        Object scoreObj = doc.getMetadata().get("score");
+        if (scoreObj instanceof Number) {
+            return ((Number) scoreObj).doubleValue();
+        }
+        Object distanceObj = doc.getMetadata().get("distance");
+        if (distanceObj instanceof Number) {
+            return 1.0 - ((Number) distanceObj).doubleValue();
+        }
+        return 0.0;
+    }
+
+    /**
+     * Warm query embedding and candidate chunks for a question still being typed.
+     */
+    public boolean prefetch(String partialQuestion) {
+        return prefetchService.prefetch(partialQuestion);
+    }
+
     /**
-     * Clear all indexed data from SimpleVectorStore.
-     * Note: SimpleVectorStore doesn't expose clear/delete methods publicly.
-     * This is a limitation of Spring AI SimpleVectorStore.
+     * Clear all indexed data from the vector store.
      */
     public void clearIndex() {
-        totalVectors = 0;
-        System.out.println("⚠️ SimpleVectorStore doesn't support clear operation");
-        System.out.println("   Counter reset. Please restart application to clear index");
+        vectorStore.clear();
+        prefetchService.invalidate();
+        System.out.println("🧹 Vector store cleared");
+    }
+
+    /**
+     * Cumulative chunking throughput in MB/s of page text.
+     */
+    public double getChunkingThroughputMbPerSecond() {
+        return textSplitter.getThroughputMbPerSecond();
     }
 
     /**
      * Get current store size.
      */
     public int getStoreSize() {
-        return totalVectors;
+        return vectorStore.size();
     }
 }
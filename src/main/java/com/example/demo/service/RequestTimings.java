@@ -0,0 +1,183 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TimingBreakdown;
+
+/**
+ * nanoTime accumulators for one request, bound to the request thread.
+ *
+ * The controller begins and finishes it; pipeline steps add to it through
+ * current(), which is null outside an instrumented request, so recording
+ * costs a thread-local read and a few additions.
+ */
+public final class RequestTimings {
+
+    /**
+     * Request attribute holding System.nanoTime() when the request reached the app.
+     */
+    public static final String RECEIVED_AT_ATTRIBUTE = "rag.receivedAtNanos";
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long receivedAtNanos;
+    private final boolean detailed;
+
+    private Long queueWaitNanos;
+    private Long extractNanos;
+    private Long chunkNanos;
+    private long embedNanos;
+    private int embedCalls;
+    private int embedRetries;
+    private Long searchNanos;
+    private Integer candidatesScanned;
+    private Integer shardsAnswered;
+    private Integer shardsTotal;
+    private Long indexNanos;
+    private Boolean prefetchHit;
+    private Integer contextTokens;
+    private Boolean cacheHit;
+    private Long llmTtftNanos;
+    private Long llmNanos;
+    private TimingBreakdown breakdown;
+
+    private RequestTimings(long receivedAtNanos, boolean detailed) {
+        this.receivedAtNanos = receivedAtNanos;
+        this.detailed = detailed;
+    }
+
+    /**
+     * Start recording on the current thread.
+     *
+     * @param receivedAtNanos when the request arrived; the gap until now is the queue wait
+     * @param detailed the client asked for the breakdown in its response
+     */
+    public static RequestTimings begin(long receivedAtNanos, boolean detailed) {
+        RequestTimings timings = new RequestTimings(receivedAtNanos, detailed);
+        timings.queueWaitNanos = System.nanoTime() - receivedAtNanos;
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * Timings of the request running on this thread, or null.
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stop recording, unbind from the thread and build the breakdown.
+     */
+    public TimingBreakdown finish() {
+        long totalNanos = System.nanoTime() - receivedAtNanos;
+        CURRENT.remove();
+
+        TimingBreakdown b = new TimingBreakdown();
+        b.setQueueWaitMillis(millis(queueWaitNanos));
+        b.setExtractMillis(millis(extractNanos));
+        b.setChunkMillis(millis(chunkNanos));
+        if (embedCalls > 0) {
+            b.setEmbedMillis(millis(embedNanos));
+            b.setEmbedCalls(embedCalls);
+            b.setEmbedRetries(embedRetries);
+        }
+        b.setSearchMillis(millis(searchNanos));
+        b.setCandidatesScanned(candidatesScanned);
+        b.setShardsAnswered(shardsAnswered);
+        b.setShardsTotal(shardsTotal);
+        b.setIndexMillis(millis(indexNanos));
+        b.setPrefetchHit(prefetchHit);
+        b.setContextTokens(contextTokens);
+        b.setCacheHit(cacheHit);
+        b.setLlmTtftMillis(millis(llmTtftNanos));
+        b.setLlmMillis(millis(llmNanos));
+        b.setTotalMillis(millis(totalNanos));
+        this.breakdown = b;
+        return b;
+    }
+
+    public TimingBreakdown getBreakdown() {
+        return breakdown;
+    }
+
+    public boolean isDetailed() {
+        return detailed;
+    }
+
+    // ===== Recorded from inside services, only if a request is being timed =====
+
+    /**
+     * One embedding API call (all attempts), from HuggingFaceEmbeddingService.
+     */
+    static void recordEmbed(long nanos, int retries) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.embedNanos += nanos;
+            timings.embedCalls++;
+            timings.embedRetries += retries;
+        }
+    }
+
+    /**
+     * Vectors scored by a search, from InMemoryVectorStore.
+     */
+    static void recordScanned(int scanned) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.candidatesScanned = (timings.candidatesScanned == null ? 0 : timings.candidatesScanned) + scanned;
+        }
+    }
+
+    /**
+     * Shards that answered a search out of those asked, from ShardedVectorStore.
+     */
+    static void recordShards(int answered, int total) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.shardsAnswered = (timings.shardsAnswered == null ? 0 : timings.shardsAnswered) + answered;
+            timings.shardsTotal = (timings.shardsTotal == null ? 0 : timings.shardsTotal) + total;
+        }
+    }
+
+    // ===== Recorded by RagService =====
+
+    public long embedNanos() {
+        return embedNanos;
+    }
+
+    public void addExtract(long nanos) {
+        extractNanos = (extractNanos == null ? 0 : extractNanos) + nanos;
+    }
+
+    public void addChunk(long nanos) {
+        chunkNanos = (chunkNanos == null ? 0 : chunkNanos) + nanos;
+    }
+
+    public void addSearch(long nanos) {
+        searchNanos = (searchNanos == null ? 0 : searchNanos) + nanos;
+    }
+
+    public void addIndex(long nanos) {
+        indexNanos = (indexNanos == null ? 0 : indexNanos) + nanos;
+    }
+
+    public void setPrefetchHit(boolean prefetchHit) {
+        this.prefetchHit = prefetchHit;
+    }
+
+    public void setContextTokens(int contextTokens) {
+        this.contextTokens = contextTokens;
+    }
+
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    public void setLlm(Long ttftNanos, long totalNanos) {
+        this.llmTtftNanos = ttftNanos;
+        this.llmNanos = totalNanos;
+    }
+
+    private static Double millis(Long nanos) {
+        return nanos == null ? null : Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * VectorStore that can also be searched and filled with precomputed vectors,
+ * so a query or chunk is embedded once and the vector is reused (e.g. across shards).
+ */
+public interface SearchableVectorStore extends VectorStore {
+
+    /**
+     * Add documents whose vectors were already computed.
+     */
+    void addEmbedded(List<Document> documents, List<float[]> embeddings);
+
+    /**
+     * Top-K search for an already-embedded query.
+     * Results carry "score" (cosine similarity) and "distance" (1 - score) metadata.
+     */
+    List<Document> similaritySearch(float[] query, int topK, double threshold);
+
+    /**
+     * Top-K search for many already-embedded queries; results are in query order.
+     * Stores that can share one pass over their vectors across queries override this.
+     */
+    default List<List<Document>> similaritySearchBatch(List<float[]> queries, int topK, double threshold) {
+        List<List<Document>> results = new ArrayList<>(queries.size());
+        for (float[] query : queries) {
+            results.add(similaritySearch(query, topK, threshold));
+        }
+        return results;
+    }
+
+    int size();
+
+    void clear();
+}
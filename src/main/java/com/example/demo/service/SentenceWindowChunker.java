@@ -0,0 +1,309 @@
+package com.example.demo.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sentence-aware token chunker for the ingestion path.
+ *
+ * Each page is scanned once into sentence spans (offsets into the page text),
+ * every span is token-counted once with the shared cached TokenCounter, and chunks are
+ * built as overlapping windows of whole sentences. Chunk text is only materialized
+ * when a window is emitted. There is no cap on the number of chunks.
+ *
+ * Invariant: no emitted chunk exceeds chunkSize tokens. Oversized sentences are cut into
+ * pieces that are re-counted, and a multi-sentence window is re-counted as a whole
+ * (BPE counts of joined text can differ from the sum of its parts) before it is emitted.
+ */
+public class SentenceWindowChunker {
+
+    private static final int MIN_CHUNK_CHARS = 5;
+
+    private final int chunkSize;
+    private final int overlap;
+
+    // Cumulative throughput counters
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong totalChunks = new AtomicLong();
+
+    /**
+     * @param chunkSize max tokens per chunk
+     * @param overlap tokens of trailing sentences repeated at the start of the next chunk
+     */
+    public SentenceWindowChunker(int chunkSize, int overlap) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = Math.max(0, Math.min(overlap, chunkSize / 2));
+    }
+
+    /**
+     * Split pages into chunks, copying each page's metadata onto its chunks.
+     */
+    public List<Document> apply(List<Document> pages) {
+        long t0 = System.nanoTime();
+        long bytes = 0;
+        List<Document> chunks = new ArrayList<>();
+
+        for (Document page : pages) {
+            String text = page.getContent();
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            bytes += utf8Length(text);
+            for (String chunk : split(text)) {
+                chunks.add(new Document(chunk, new HashMap<>(page.getMetadata())));
+            }
+        }
+
+        long dt = System.nanoTime() - t0;
+        totalBytes.addAndGet(bytes);
+        totalNanos.addAndGet(dt);
+        totalChunks.addAndGet(chunks.size());
+        System.out.println("   ✂️  Chunked " + pages.size() + " pages → " + chunks.size() + " chunks ("
+                + String.format("%.1f", mbPerSecond(bytes, dt)) + " MB/s)");
+        return chunks;
+    }
+
+    /**
+     * Split one text into overlapping sentence windows.
+     */
+    public List<String> split(String text) {
+        Spans spans = sentenceSpans(text);
+        List<String> chunks = new ArrayList<>();
+        int n = spans.size;
+        int i = 0;
+
+        while (i < n) {
+            // Every span fits on its own (see addSentence), so the first one is always admitted
+            int j = i;
+            int tokens = 0;
+            while (j < n && (j == i || tokens + spans.tokens[j] <= chunkSize)) {
+                tokens += spans.tokens[j];
+                j++;
+                // Prefer closing the window at a paragraph break once it is half full
+                if (spans.paragraphEnd[j - 1] && tokens >= chunkSize / 2) {
+                    break;
+                }
+            }
+
+            String chunk = text.substring(spans.start[i], spans.end[j - 1]);
+            while (j - 1 > i && TokenCounter.count(chunk) > chunkSize) {
+                j--;
+                chunk = text.substring(spans.start[i], spans.end[j - 1]);
+            }
+            if (chunk.length() >= MIN_CHUNK_CHARS) {
+                chunks.add(chunk);
+            }
+            if (j >= n) {
+                break;
+            }
+
+            // Step back over trailing sentences to build the overlap, always advancing past i
+            int k = j;
+            int overlapTokens = 0;
+            while (k - 1 > i && overlapTokens + spans.tokens[k - 1] <= overlap) {
+                overlapTokens += spans.tokens[k - 1];
+                k--;
+            }
+            i = k;
+        }
+        return chunks;
+    }
+
+    /**
+     * Scan text into sentence spans. A sentence ends at . ! ? … followed by whitespace
+     * (unless the next word starts lowercase or with a digit, e.g. "TP. hcm", "v.v. và"),
+     * or at a blank line, which also marks a paragraph end.
+     * Sentences longer than chunkSize are cut at whitespace (or mid-word if there is none).
+     */
+    private Spans sentenceSpans(String text) {
+        Spans spans = new Spans();
+        int len = text.length();
+        int start = skipWhitespace(text, 0);
+
+        int pos = start;
+        while (pos < len) {
+            char c = text.charAt(pos);
+            boolean paragraphBreak = c == '\n' && endsParagraph(text, pos);
+            boolean sentenceEnd = (c == '.' || c == '!' || c == '?' || c == '…')
+                    && pos + 1 < len && Character.isWhitespace(text.charAt(pos + 1))
+                    && !continuesSentence(text, pos + 1);
+
+            if (paragraphBreak || sentenceEnd) {
+                int end = paragraphBreak ? trimEnd(text, start, pos) : pos + 1;
+                if (end > start) {
+                    addSentence(text, start, end, paragraphBreak || endsParagraph(text, pos + 1), spans);
+                }
+                start = skipWhitespace(text, pos + 1);
+                pos = start;
+                continue;
+            }
+            pos++;
+        }
+
+        int end = trimEnd(text, start, len);
+        if (end > start) {
+            addSentence(text, start, end, true, spans);
+        }
+        return spans;
+    }
+
+    private void addSentence(String text, int start, int end, boolean paragraphEnd, Spans spans) {
+        int tokens = TokenCounter.count(text.substring(start, end));
+        if (tokens <= chunkSize) {
+            spans.add(start, end, tokens, paragraphEnd);
+            return;
+        }
+
+        // Oversized sentence: cut at whitespace using the sentence's own chars-per-token ratio,
+        // then re-count each piece and cut again while it is still over chunkSize
+        double charsPerToken = (double) (end - start) / tokens;
+        int target = Math.max(1, (int) (chunkSize * charsPerToken * 0.9));
+        int pieceStart = start;
+        while (pieceStart < end) {
+            int pieceEnd = pieceStart + target < end ? cutPoint(text, pieceStart, pieceStart + target) : end;
+            int pieceTokens = TokenCounter.count(text.substring(pieceStart, pieceEnd));
+            while (pieceTokens > chunkSize && pieceEnd - pieceStart > 1) {
+                int length = pieceEnd - pieceStart;
+                int shorter = Math.min(length - 1, Math.max(1, (int) ((long) length * chunkSize / pieceTokens * 0.9)));
+                int cut = cutPoint(text, pieceStart, pieceStart + shorter);
+                if (cut >= pieceEnd) {
+                    break; // a single code point that alone exceeds chunkSize
+                }
+                pieceEnd = cut;
+                pieceTokens = TokenCounter.count(text.substring(pieceStart, pieceEnd));
+            }
+            spans.add(pieceStart, pieceEnd, pieceTokens, paragraphEnd && pieceEnd >= end);
+            pieceStart = skipWhitespace(text, pieceEnd);
+        }
+    }
+
+    /**
+     * Last whitespace-trimmed cut at or before limit (exclusive end, > start); falls back to
+     * a hard cut at limit that does not split a surrogate pair.
+     */
+    private static int cutPoint(String text, int start, int limit) {
+        for (int i = limit; i > start; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                int end = trimEnd(text, start, i);
+                if (end > start) {
+                    return end;
+                }
+            }
+        }
+        if (Character.isHighSurrogate(text.charAt(limit - 1))) {
+            return limit - 1 > start ? limit - 1 : limit + 1;
+        }
+        return limit;
+    }
+
+    private static boolean continuesSentence(String text, int from) {
+        int next = skipWhitespace(text, from);
+        if (next >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(next);
+        return Character.isLowerCase(c) || Character.isDigit(c);
+    }
+
+    /**
+     * True if the whitespace run starting at from contains a blank line.
+     */
+    private static boolean endsParagraph(String text, int from) {
+        int newlines = 0;
+        for (int i = from; i < text.length() && Character.isWhitespace(text.charAt(i)); i++) {
+            if (text.charAt(i) == '\n' && ++newlines >= 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(String text, int start, int end) {
+        int i = end;
+        while (i > start && Character.isWhitespace(text.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return nanos <= 0 ? 0.0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+    }
+
+    /**
+     * Cumulative throughput since startup, in MB/s of UTF-8 page text.
+     */
+    public double getThroughputMbPerSecond() {
+        return mbPerSecond(totalBytes.get(), totalNanos.get());
+    }
+
+    public long getTotalChunks() {
+        return totalChunks.get();
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * Growable parallel arrays of sentence offsets and token counts.
+     */
+    private static final class Spans {
+        int[] start = new int[64];
+        int[] end = new int[64];
+        int[] tokens = new int[64];
+        boolean[] paragraphEnd = new boolean[64];
+        int size;
+
+        void add(int s, int e, int t, boolean p) {
+            if (size == start.length) {
+                int cap = size * 2;
+                start = Arrays.copyOf(start, cap);
+                end = Arrays.copyOf(end, cap);
+                tokens = Arrays.copyOf(tokens, cap);
+                paragraphEnd = Arrays.copyOf(paragraphEnd, cap);
+            }
+            start[size] = s;
+            end[size] = e;
+            tokens[size] = t;
+            paragraphEnd[size] = p;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ShardAddRequest;
+import com.example.demo.model.ShardDocument;
+import com.example.demo.model.ShardSearchRequest;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cluster-mode VectorStore: chunks are hash-partitioned across nodes by source document
+ * (the file_name metadata of the PDF they came from; the chunk id if there is none), so
+ * all chunks of one PDF live on one shard and indexing a PDF is a single-shard write.
+ *
+ * The node that receives a request embeds once, then:
+ * - add: ships each chunk with its vector to the owning shard; if any shard write fails,
+ *   the ids of the batch are deleted again from every shard it was sent to before the
+ *   error is rethrown (best effort: a shard that is down during rollback keeps its rows,
+ *   and ids that existed before the add lose their previous version)
+ * - search: fans the query vector out to the remote shards, searches the local shard on
+ *   the caller thread meanwhile, and merges the per-shard top-K; remote shards that miss
+ *   rag.cluster.shard-timeout-ms are skipped, so the answer may be built from partial results;
+ *   the shard count that answered goes to RequestTimings and /ask flags partialResults.
+ * This node's own shard is served in-process; the others over /api/cluster/shard.
+ * Remote searches use rag.cluster.shard-timeout-ms as HTTP read timeout, so a dead node
+ * holds a fan-out thread no longer than the search deadline.
+ */
+public class ShardedVectorStore implements SearchableVectorStore {
+
+    private static final ParameterizedTypeReference<List<ShardDocument>> HITS = new ParameterizedTypeReference<>() { };
+
+    private final InMemoryVectorStore localShard;
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingModelRegistry modelRegistry;
+    private final int nodeId;
+    private final List<String> nodes;
+    private final long shardTimeoutMs;
+    private final RestClient searchClient;
+    private final RestClient writeClient;
+    private final ExecutorService searchExecutor;
+    private final ExecutorService writeExecutor;
+
+    /**
+     * @param nodes base URLs of all nodes, indexed by node id (this node included)
+     */
+    public ShardedVectorStore(InMemoryVectorStore localShard, EmbeddingModel embeddingModel,
+                              EmbeddingModelRegistry modelRegistry, int nodeId, List<String> nodes,
+                              long shardTimeoutMs) {
+        if (nodeId < 0 || nodeId >= nodes.size()) {
+            throw new IllegalArgumentException("rag.cluster.node-id " + nodeId + " is not in rag.cluster.nodes " + nodes);
+        }
+        this.localShard = localShard;
+        this.embeddingModel = embeddingModel;
+        this.modelRegistry = modelRegistry;
+        this.nodeId = nodeId;
+        this.nodes = List.copyOf(nodes);
+        this.shardTimeoutMs = shardTimeoutMs;
+
+        // Searches must not outlive their deadline; bulk writes get a longer read timeout
+        this.searchClient = restClient(shardTimeoutMs);
+        this.writeClient = restClient(Math.max(shardTimeoutMs, 30000));
+        this.searchExecutor = pool("shard-search-", Math.max(2, nodes.size() * 4));
+        this.writeExecutor = pool("shard-write-", Math.max(1, nodes.size()));
+    }
+
+    private static RestClient restClient(long readTimeoutMs) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(Duration.ofMillis(Math.min(readTimeoutMs, 2000)));
+        factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return RestClient.builder().requestFactory(factory).build();
+    }
+
+    private static ExecutorService pool(String prefix, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Owning shard of a chunk: by its source file, or by its id if it has none.
+     */
+    public int shardOf(Document document) {
+        Object source = document.getMetadata().get(ParallelPdfReader.METADATA_FILE_NAME);
+        String key = source != null ? source.toString() : document.getId();
+        return Math.floorMod(key.hashCode(), nodes.size());
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<String> texts = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            texts.add(document.getContent());
+        }
+        addEmbedded(documents, embeddingModel.embed(texts));
+    }
+
+    @Override
+    public void addEmbedded(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Got " + embeddings.size() + " embeddings for " + documents.size() + " documents");
+        }
+
+        // Partition by owning shard
+        List<List<Document>> docsByShard = new ArrayList<>();
+        List<List<float[]>> vectorsByShard = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            docsByShard.add(new ArrayList<>());
+            vectorsByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < documents.size(); i++) {
+            int shard = shardOf(documents.get(i));
+            docsByShard.get(shard).add(documents.get(i));
+            vectorsByShard.get(shard).add(embeddings.get(i));
+        }
+
+        EmbeddingModelRegistry.ModelSpec spec = modelRegistry.getSpec();
+        Map<Integer, Future<?>> writes = new LinkedHashMap<>();
+        for (int shard = 0; shard < nodes.size(); shard++) {
+            List<Document> docs = docsByShard.get(shard);
+            if (docs.isEmpty()) {
+                continue;
+            }
+            List<float[]> vectors = vectorsByShard.get(shard);
+            if (shard == nodeId) {
+                writes.put(shard, writeExecutor.submit(() -> localShard.addEmbedded(docs, vectors)));
+            } else {
+                List<ShardDocument> payload = new ArrayList<>(docs.size());
+                for (int i = 0; i < docs.size(); i++) {
+                    Document doc = docs.get(i);
+                    payload.add(new ShardDocument(doc.getId(), doc.getContent(), doc.getMetadata(), vectors.get(i), 0.0));
+                }
+                String node = nodes.get(shard);
+                writes.put(shard, writeExecutor.submit(() -> writeClient.post()
+                        .uri(node + "/api/cluster/shard/documents")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(new ShardAddRequest(spec.model(), spec.dimension(), payload))
+                        .retrieve()
+                        .toBodilessEntity()));
+            }
+        }
+
+        // Wait for every write (so none lands after a rollback), then undo all of them if one failed
+        Throwable failure = null;
+        for (Map.Entry<Integer, Future<?>> write : writes.entrySet()) {
+            try {
+                write.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : e;
+            } catch (ExecutionException e) {
+                System.err.println("   ❌ Shard " + write.getKey() + " write failed: " + e.getCause().getMessage());
+                failure = failure != null ? failure : e.getCause();
+            }
+        }
+        if (failure != null) {
+            rollback(writes.keySet(), docsByShard);
+            throw new IllegalStateException("Shard write failed, batch rolled back: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Best-effort removal of a failed batch from every shard it was sent to
+     * (including the failed ones, which may have committed before erroring).
+     */
+    private void rollback(Collection<Integer> shards, List<List<Document>> docsByShard) {
+        for (int shard : shards) {
+            List<String> ids = docsByShard.get(shard).stream().map(Document::getId).toList();
+            try {
+                deleteOnShard(shard, ids);
+            } catch (Exception e) {
+                System.err.println("   ⚠️  Rollback on shard " + shard + " failed, " + ids.size()
+                        + " chunks may remain: " + e.getMessage());
+            }
+        }
+        System.err.println("   ↩️  Rolled back batch on shards " + shards);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (request.getFilterExpression() != null) {
+            throw new UnsupportedOperationException("Metadata filters are not supported by ShardedVectorStore");
+        }
+        float[] query = embeddingModel.embed(request.getQuery());
+        return similaritySearch(query, request.getTopK(), request.getSimilarityThreshold());
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] query, int topK, double threshold) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shardTimeoutMs);
+        Map<Integer, Future<List<Document>>> searches = new LinkedHashMap<>();
+        for (int shard = 0; shard < nodes.size(); shard++) {
+            if (shard != nodeId) {
+                String node = nodes.get(shard);
+                // A search still queued at its deadline would only be discarded; skip it
+                searches.put(shard, searchExecutor.submit(() -> System.nanoTime() < deadline
+                        ? searchRemote(node, query, topK, threshold)
+                        : List.of()));
+            }
+        }
+
+        // Local shard on the caller thread while the remote ones run
+        List<Document> merged = new ArrayList<>(localShard.similaritySearch(query, topK, threshold));
+        int answered = 1;
+
+        // Gather with one shared deadline; late or failed shards are dropped
+        for (Map.Entry<Integer, Future<List<Document>>> entry : searches.entrySet()) {
+            int shard = entry.getKey();
+            Future<List<Document>> search = entry.getValue();
+            try {
+                merged.addAll(search.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                answered++;
+            } catch (TimeoutException e) {
+                search.cancel(true);
+                System.err.println("   ⚠️  Shard " + shard + " timed out after " + shardTimeoutMs + "ms, using partial results");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("   ⚠️  Shard " + shard + " failed (" + e.getCause().getMessage() + "), using partial results");
+            }
+        }
+        RequestTimings.recordShards(answered, nodes.size());
+        if (answered < nodes.size()) {
+            System.err.println("   ⚠️  Search answered by " + answered + "/" + nodes.size() + " shards");
+        }
+
+        merged.sort(Comparator.comparingDouble(ShardedVectorStore::score).reversed());
+        return merged.size() > topK ? new ArrayList<>(merged.subList(0, topK)) : merged;
+    }
+
+    private List<Document> searchRemote(String node, float[] query, int topK, double threshold) {
+        List<ShardDocument> hits = searchClient.post()
+                .uri(node + "/api/cluster/shard/search")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ShardSearchRequest(query, topK, threshold))
+                .retrieve()
+                .body(HITS);
+        List<Document> results = new ArrayList<>();
+        if (hits == null) {
+            return results;
+        }
+        for (ShardDocument hit : hits) {
+            Map<String, Object> meta = new HashMap<>(hit.getMetadata() != null ? hit.getMetadata() : Map.of());
+            meta.put("score", hit.getScore());
+            meta.put("distance", 1.0 - hit.getScore());
+            results.add(new Document(hit.getId(), hit.getContent(), meta));
+        }
+        return results;
+    }
+
+    private static double score(Document doc) {
+        Object score = doc.getMetadata().get("score");
+        return score instanceof Number ? ((Number) score).doubleValue() : 0.0;
+    }
+
+    /**
+     * Chunk ids do not determine their shard (placement is by source file), so the
+     * ids are sent to every shard; unknown ids are ignored there.
+     */
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        boolean removed = false;
+        for (int shard = 0; shard < nodes.size(); shard++) {
+            removed |= deleteOnShard(shard, idList);
+        }
+        return Optional.of(removed);
+    }
+
+    private boolean deleteOnShard(int shard, List<String> ids) {
+        if (shard == nodeId) {
+            return localShard.delete(ids).orElse(false);
+        }
+        Boolean result = writeClient.post()
+                .uri(nodes.get(shard) + "/api/cluster/shard/delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ids)
+                .retrieve()
+                .body(Boolean.class);
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * Total vectors across all reachable shards.
+     */
+    @Override
+    public int size() {
+        int total = localShard.size();
+        for (int shard = 0; shard < nodes.size(); shard++) {
+            if (shard == nodeId) {
+                continue;
+            }
+            try {
+                Integer size = searchClient.get().uri(nodes.get(shard) + "/api/cluster/shard/size").retrieve().body(Integer.class);
+                total += size != null ? size : 0;
+            } catch (Exception e) {
+                System.err.println("   ⚠️  Shard " + shard + " size unavailable: " + e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void clear() {
+        localShard.clear();
+        for (int shard = 0; shard < nodes.size(); shard++) {
+            if (shard != nodeId) {
+                writeClient.delete().uri(nodes.get(shard) + "/api/cluster/shard").retrieve().toBodilessEntity();
+            }
+        }
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public void close() {
+        searchExecutor.shutdownNow();
+        writeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TimingBreakdown;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Rolling window of the last N timing breakdowns per request kind ("ask", "ask-batch",
+ * "ask-batch-retrieval", "reindex"), summarized as mean / p50 / p95 / max per step for
+ * GET /api/admin/timings. Hit flags count as 1/0, so their mean is the hit rate.
+ * Every request is recorded, whether or not the client asked for its own breakdown.
+ */
+@Service
+public class TimingAggregator {
+
+    private static final Map<String, Function<TimingBreakdown, Number>> METRICS = new LinkedHashMap<>();
+
+    static {
+        METRICS.put("queueWaitMillis", TimingBreakdown::getQueueWaitMillis);
+        METRICS.put("extractMillis", TimingBreakdown::getExtractMillis);
+        METRICS.put("chunkMillis", TimingBreakdown::getChunkMillis);
+        METRICS.put("embedMillis", TimingBreakdown::getEmbedMillis);
+        METRICS.put("embedRetries", TimingBreakdown::getEmbedRetries);
+        METRICS.put("prefetchHit", b -> hit(b.getPrefetchHit()));
+        METRICS.put("searchMillis", TimingBreakdown::getSearchMillis);
+        METRICS.put("candidatesScanned", TimingBreakdown::getCandidatesScanned);
+        METRICS.put("indexMillis", TimingBreakdown::getIndexMillis);
+        METRICS.put("contextTokens", TimingBreakdown::getContextTokens);
+        METRICS.put("cacheHit", b -> hit(b.getCacheHit()));
+        METRICS.put("llmTtftMillis", TimingBreakdown::getLlmTtftMillis);
+        METRICS.put("llmMillis", TimingBreakdown::getLlmMillis);
+        METRICS.put("totalMillis", TimingBreakdown::getTotalMillis);
+    }
+
+    @Value("${rag.timing.window:1000}")
+    private int window;
+
+    private final Map<String, ArrayDeque<TimingBreakdown>> recent = new LinkedHashMap<>();
+
+    public synchronized void record(String kind, TimingBreakdown breakdown) {
+        ArrayDeque<TimingBreakdown> samples = recent.computeIfAbsent(kind, k -> new ArrayDeque<>());
+        samples.addLast(breakdown);
+        while (samples.size() > window) {
+            samples.removeFirst();
+        }
+    }
+
+    public Map<String, Object> summary() {
+        Map<String, List<TimingBreakdown>> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            recent.forEach((kind, samples) -> snapshot.put(kind, new ArrayList<>(samples)));
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        snapshot.forEach((kind, samples) -> {
+            Map<String, Object> kindSummary = new LinkedHashMap<>();
+            kindSummary.put("count", samples.size());
+            METRICS.forEach((name, metric) -> {
+                double[] values = samples.stream()
+                        .map(metric)
+                        .filter(Objects::nonNull)
+                        .mapToDouble(Number::doubleValue)
+                        .sorted()
+                        .toArray();
+                if (values.length > 0) {
+                    kindSummary.put(name, describe(values));
+                }
+            });
+            summary.put(kind, kindSummary);
+        });
+        return summary;
+    }
+
+    private static Integer hit(Boolean flag) {
+        return flag == null ? null : flag ? 1 : 0;
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+    }
+
+    private static Map<String, Object> describe(double[] sorted) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mean", round(Arrays.stream(sorted).average().orElse(0)));
+        stats.put("p50", round(percentile(sorted, 0.50)));
+        stats.put("p95", round(percentile(sorted, 0.95)));
+        stats.put("max", round(sorted[sorted.length - 1]));
+        return stats;
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+}
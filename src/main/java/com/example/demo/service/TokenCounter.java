@@ -0,0 +1,21 @@
+package com.example.demo.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+
+/**
+ * Shared BPE token counter (cl100k, same encoding TokenTextSplitter uses).
+ * The encoding is created once per JVM and is thread-safe.
+ */
+public final class TokenCounter {
+
+    private static final Encoding ENCODING =
+            Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private TokenCounter() { }
+
+    public static int count(String text) {
+        return text == null || text.isEmpty() ? 0 : ENCODING.countTokens(text);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vector storage and top-K search behind InMemoryVectorStore.
+ * Slots are dense and mirror the store's rows: add appends at slot size(),
+ * swapRemove moves the last slot into the removed one.
+ * All calls are made under the store's lock.
+ */
+public interface VectorIndex {
+
+    int size();
+
+    void add(float[] vector);
+
+    void set(int slot, float[] vector);
+
+    void swapRemove(int slot);
+
+    /**
+     * Vector stored at slot (reconstructed, for lossy indexes).
+     */
+    float[] vector(int slot);
+
+    void clear();
+
+    /**
+     * Top-K slots by cosine similarity, best first.
+     */
+    Hits search(float[] query, int topK, double threshold);
+
+    /**
+     * Top-K for several queries at once, in query order.
+     */
+    default Hits[] searchBatch(List<float[]> queries, int topK, double threshold) {
+        Hits[] hits = new Hits[queries.size()];
+        for (int q = 0; q < hits.length; q++) {
+            hits[q] = search(queries.get(q), topK, threshold);
+        }
+        return hits;
+    }
+
+    /**
+     * Approximate heap bytes used per stored vector.
+     */
+    long bytesPerVector();
+
+    /**
+     * Point-in-time copy of the stored vectors that stays readable without the store's
+     * lock while writes continue, e.g. for snapshot export. Copies only what later writes
+     * could change in place (array references, codes), not the vectors themselves.
+     */
+    Frozen freeze();
+
+    /**
+     * New empty index with the same configuration, e.g. to stage a snapshot import.
+     */
+    VectorIndex emptyCopy();
+
+    /**
+     * Release storage held outside the heap.
+     */
+    default void close() {
+    }
+
+    /**
+     * Vectors by slot as they were when freeze() was called.
+     */
+    interface Frozen extends AutoCloseable {
+        float[] vector(int slot);
+
+        @Override
+        default void close() {
+        }
+    }
+
+    /**
+     * Search result: slots and scores sorted by descending score,
+     * plus how many stored vectors were scored to find them.
+     */
+    record Hits(int[] slots, double[] scores, int scanned) {
+        public int size() {
+            return slots.length;
+        }
+    }
+
+    /**
+     * Bounded min-heap on (slot, score) primitives keeping the best K.
+     */
+    final class TopK {
+        private final int k;
+        private final int[] slots;
+        private final double[] scores;
+        private int size;
+
+        public TopK(int k) {
+            this.k = Math.max(0, k);
+            this.slots = new int[this.k];
+            this.scores = new double[this.k];
+        }
+
+        /**
+         * Lowest score that would still be kept.
+         */
+        public double floor() {
+            return size < k ? Double.NEGATIVE_INFINITY : scores[0];
+        }
+
+        public void offer(int slot, double score) {
+            if (k == 0) {
+                return;
+            }
+            if (size < k) {
+                slots[size] = slot;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                slots[0] = slot;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Offer every hit of another partial result.
+         */
+        public void offerAll(Hits hits) {
+            for (int i = 0; i < hits.size(); i++) {
+                offer(hits.slots()[i], hits.scores()[i]);
+            }
+        }
+
+        public Hits toHits(int scanned) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            int[] outSlots = new int[size];
+            double[] outScores = new double[size];
+            for (int i = 0; i < size; i++) {
+                outSlots[i] = slots[order[i]];
+                outScores[i] = scores[order[i]];
+            }
+            return new Hits(outSlots, outScores, scanned);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int smallest = i;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int slot = slots[a];
+            slots[a] = slots[b];
+            slots[b] = slot;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.demo.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Full-precision float32 vectors kept outside the Java heap object graph, by slot:
+ * fixed-size rows in heap or direct ByteBuffer segments, or in a temp file.
+ *
+ * Used by IvfPqVectorIndex to keep the original vectors after PQ training, so the
+ * index can be retrained (and exported) without going through lossy reconstructions.
+ * Slots mirror the index: add appends, swapRemove moves the last row into the freed slot.
+ * Not thread-safe for writes; the owning store's lock serializes them. Concurrent get()
+ * calls are safe (absolute reads only).
+ */
+public class VectorSpill implements Closeable {
+
+    // Segment size for heap/direct buffers, rounded down to whole rows
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private final ChunkPayloadStore.Storage storage;
+    private final Path directory;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private FileChannel channel;
+    private Path file;
+
+    private int dimension;
+    private int rowsPerSegment;
+    private int size;
+
+    /**
+     * @param directory where FILE storage creates its temp file
+     */
+    public VectorSpill(ChunkPayloadStore.Storage storage, Path directory) {
+        this.storage = storage;
+        this.directory = directory;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(float[] vector) {
+        if (size == 0 && dimension == 0) {
+            dimension = vector.length;
+            rowsPerSegment = Math.max(1, SEGMENT_BYTES / rowBytes());
+        }
+        write(size++, vector);
+    }
+
+    public void set(int slot, float[] vector) {
+        checkSlot(slot);
+        write(slot, vector);
+    }
+
+    public void swapRemove(int slot) {
+        checkSlot(slot);
+        int last = size - 1;
+        if (slot != last) {
+            write(slot, get(last));
+        }
+        size--;
+    }
+
+    public float[] get(int slot) {
+        checkSlot(slot);
+        float[] vector = new float[dimension];
+        if (storage == ChunkPayloadStore.Storage.FILE) {
+            ByteBuffer row = ByteBuffer.allocate(rowBytes());
+            try {
+                long position = (long) slot * rowBytes();
+                while (row.hasRemaining()) {
+                    if (channel.read(row, position + row.position()) < 0) {
+                        throw new IOException("Unexpected end of vector spill file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read spilled vector", e);
+            }
+            row.flip().asFloatBuffer().get(vector);
+            return vector;
+        }
+        ByteBuffer segment = segments.get(slot / rowsPerSegment);
+        segment.slice((slot % rowsPerSegment) * rowBytes(), rowBytes()).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * New spill holding a copy of the current rows, in the same storage
+     * (buffer copies, or a file-to-file transfer), so no rows pass through the heap.
+     */
+    public VectorSpill copy() {
+        VectorSpill copy = emptyCopy();
+        copy.dimension = dimension;
+        copy.rowsPerSegment = rowsPerSegment;
+        copy.size = size;
+        if (storage == ChunkPayloadStore.Storage.FILE) {
+            if (size == 0) {
+                return copy;
+            }
+            try {
+                copy.openFile();
+                long bytes = bytes();
+                long position = 0;
+                while (position < bytes) {
+                    position += channel.transferTo(position, bytes - position, copy.channel);
+                }
+            } catch (IOException e) {
+                copy.close();
+                throw new UncheckedIOException("Could not copy vector spill file", e);
+            }
+            return copy;
+        }
+        long remaining = bytes();
+        for (ByteBuffer segment : segments) {
+            if (remaining == 0) {
+                break;
+            }
+            int used = (int) Math.min(remaining, segment.capacity());
+            ByteBuffer target = storage == ChunkPayloadStore.Storage.OFFHEAP
+                    ? ByteBuffer.allocateDirect(segment.capacity())
+                    : ByteBuffer.allocate(segment.capacity());
+            target.put(0, segment, 0, used);
+            copy.segments.add(target);
+            remaining -= used;
+        }
+        return copy;
+    }
+
+    /**
+     * New empty spill with the same storage and directory.
+     */
+    public VectorSpill emptyCopy() {
+        return new VectorSpill(storage, directory);
+    }
+
+    /**
+     * Drop every row; segments and the file are released and the dimension is unbound.
+     */
+    public void clear() {
+        segments.clear();
+        if (channel != null) {
+            try {
+                channel.truncate(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        size = 0;
+        dimension = 0;
+    }
+
+    /**
+     * Bytes held for the stored rows (heap, direct memory or file, per storage).
+     */
+    public long bytes() {
+        return (long) size * rowBytes();
+    }
+
+    public String storageName() {
+        return storage.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not close vector spill file: " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(int slot, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length + " does not match spill dimension " + dimension);
+        }
+        ByteBuffer row = ByteBuffer.allocate(rowBytes());
+        row.asFloatBuffer().put(vector);
+        if (storage == ChunkPayloadStore.Storage.FILE) {
+            try {
+                openFile();
+                long position = (long) slot * rowBytes();
+                while (row.hasRemaining()) {
+                    channel.write(row, position + row.position());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write spilled vector", e);
+            }
+            return;
+        }
+        int segment = slot / rowsPerSegment;
+        while (segments.size() <= segment) {
+            int capacity = rowsPerSegment * rowBytes();
+            segments.add(storage == ChunkPayloadStore.Storage.OFFHEAP
+                    ? ByteBuffer.allocateDirect(capacity)
+                    : ByteBuffer.allocate(capacity));
+        }
+        segments.get(segment).put((slot % rowsPerSegment) * rowBytes(), row.array());
+    }
+
+    private void openFile() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(directory);
+            file = Files.createTempFile(directory, "rag-vectors-", ".f32");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            System.out.println("   💽 Full-precision vector file: " + file);
+        }
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+        }
+    }
+
+    private int rowBytes() {
+        return dimension * Float.BYTES;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.DemoApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Self-contained load test: starts the stub embedding and chat servers, boots the
+ * application against them in-process, then replays /reindex and /ask workloads
+ * at a target rate (open loop) and reports throughput, latency percentiles, heap and GC.
+ *
+ * Run with: mvn -Ploadtest test-compile exec:java
+ *
+ * Settings (system properties, defaults in brackets):
+ *   loadtest.scenarios          comma list of ask, reindex, mixed [ask,reindex,mixed]
+ *   loadtest.rps                target requests per second [10]
+ *   loadtest.duration-seconds   duration of each scenario [30]
+ *   loadtest.mixed.reindex-ratio share of /reindex in the mixed scenario [0.05]
+ *   loadtest.pdf                PDF uploaded by /reindex [sample_rag_document.pdf]
+ *   loadtest.embed.dim          stub embedding dimension [1024]
+ *   loadtest.embed.latency-ms   stub embedding latency per call [50]
+ *   loadtest.chat.ttft-ms       stub time to first token [300]
+ *   loadtest.chat.tokens-per-second stub generation rate [50]
+ *   loadtest.chat.tokens        stub answer length in tokens [100]
+ *
+ * Heap and GC numbers are for the whole JVM (application, stubs and driver together).
+ */
+public class LoadTestDriver {
+
+    private static final String[] QUESTIONS = {
+            "Tài liệu này nói về chủ đề gì?",
+            "Tóm tắt các ý chính của chương đầu tiên.",
+            "Những kết luận quan trọng nhất là gì?",
+            "Tài liệu đề cập đến những số liệu nào?",
+            "Ai là đối tượng chính được nhắc đến?"
+    };
+
+    public static void main(String[] args) throws Exception {
+        List<String> scenarios = List.of(System.getProperty("loadtest.scenarios", "ask,reindex,mixed").split(","));
+        double rps = Double.parseDouble(System.getProperty("loadtest.rps", "10"));
+        int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+        double reindexRatio = Double.parseDouble(System.getProperty("loadtest.mixed.reindex-ratio", "0.05"));
+        Path pdf = Path.of(System.getProperty("loadtest.pdf", "sample_rag_document.pdf"));
+
+        try (StubEmbeddingServer embedServer = new StubEmbeddingServer(0,
+                     Integer.getInteger("loadtest.embed.dim", 1024),
+                     Long.getLong("loadtest.embed.latency-ms", 50));
+             StubChatServer chatServer = new StubChatServer(0,
+                     Long.getLong("loadtest.chat.ttft-ms", 300),
+                     Double.parseDouble(System.getProperty("loadtest.chat.tokens-per-second", "50")),
+                     Integer.getInteger("loadtest.chat.tokens", 100))) {
+
+            embedServer.start();
+            chatServer.start();
+
+            ConfigurableApplicationContext app = SpringApplication.run(DemoApplication.class,
+                    "--server.port=0",
+                    "--spring.ai.openai.api-key=stub",
+                    "--spring.ai.openai.base-url=http://127.0.0.1:" + chatServer.getPort(),
+                    "--huggingface.api.key=stub",
+                    "--huggingface.api.base-url=" + embedServer.getBaseUrl(),
+                    // Every ask must reach the LLM stub, whatever the stub embeddings score
+                    "--rag.retrieval.min-score=-1");
+            try {
+                String port = app.getEnvironment().getProperty("local.server.port");
+                LoadTestDriver driver = new LoadTestDriver("http://127.0.0.1:" + port, Files.readAllBytes(pdf), pdf);
+
+                // Make sure /ask has something to retrieve
+                driver.reindex();
+
+                List<Result> results = new ArrayList<>();
+                for (String scenario : scenarios) {
+                    double ratio = switch (scenario.trim()) {
+                        case "ask" -> 0.0;
+                        case "reindex" -> 1.0;
+                        case "mixed" -> reindexRatio;
+                        default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+                    };
+                    results.add(driver.run(scenario.trim(), rps, durationSeconds, ratio));
+                }
+
+                System.out.println();
+                System.out.println("=".repeat(120));
+                System.out.printf("%-10s %8s %8s %8s %8s %9s %9s %9s %10s %10s %8s %9s%n",
+                        "scenario", "sent", "ok", "errors", "rps", "p50 ms", "p95 ms", "p99 ms",
+                        "heap MB", "peak MB", "gc #", "gc ms");
+                for (Result r : results) {
+                    System.out.printf("%-10s %8d %8d %8d %8.1f %9.1f %9.1f %9.1f %10.1f %10.1f %8d %9d%n",
+                            r.scenario, r.sent, r.ok, r.errors, r.throughput, r.p50, r.p95, r.p99,
+                            r.heapUsedMb, r.heapPeakMb, r.gcCount, r.gcMillis);
+                }
+                System.out.println("=".repeat(120));
+                System.out.println("stub embedding calls: " + embedServer.getRequests() + " (" + embedServer.getTexts()
+                        + " texts), stub chat calls: " + chatServer.getRequests());
+                long asks = results.stream().mapToLong(r -> r.askOk).sum();
+                if (asks > 0 && chatServer.getRequests() == 0) {
+                    throw new IllegalStateException(asks + " asks succeeded but none reached the chat stub:"
+                            + " latencies above exclude the LLM, the run is invalid");
+                }
+            } finally {
+                app.close();
+            }
+        }
+    }
+
+    private final String baseUrl;
+    private final byte[] pdfBytes;
+    private final String pdfName;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newCachedThreadPool())
+            .build();
+    private final AtomicInteger questionCounter = new AtomicInteger();
+
+    private LoadTestDriver(String baseUrl, byte[] pdfBytes, Path pdf) {
+        this.baseUrl = baseUrl;
+        this.pdfBytes = pdfBytes;
+        this.pdfName = pdf.getFileName().toString();
+    }
+
+    /**
+     * Fire requests at a fixed rate for the given duration, regardless of how fast
+     * earlier ones complete, then wait for the stragglers.
+     */
+    private Result run(String scenario, double rps, int durationSeconds, double reindexRatio) throws Exception {
+        System.out.println("🚦 Scenario '" + scenario + "': " + rps + " rps for " + durationSeconds + "s");
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+
+        int total = (int) Math.max(1, Math.round(rps * durationSeconds));
+        long intervalNanos = (long) (1e9 / rps);
+        Random random = new Random(42);
+        List<CompletableFuture<Long>> inFlight = new ArrayList<>(total);
+        List<Boolean> asks = new ArrayList<>(total);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            boolean reindex = random.nextDouble() < reindexRatio;
+            inFlight.add(reindex ? send(reindexRequest()) : send(askRequest()));
+            asks.add(!reindex);
+        }
+
+        List<Long> latencies = new ArrayList<>(total);
+        int errors = 0;
+        int askOk = 0;
+        for (int i = 0; i < inFlight.size(); i++) {
+            try {
+                latencies.add(inFlight.get(i).get(5, TimeUnit.MINUTES));
+                if (asks.get(i)) {
+                    askOk++;
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                errors++;
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Collections.sort(latencies);
+        Result result = new Result();
+        result.scenario = scenario;
+        result.sent = total;
+        result.ok = latencies.size();
+        result.askOk = askOk;
+        result.errors = errors;
+        result.throughput = latencies.size() / elapsedSeconds;
+        result.p50 = percentile(latencies, 0.50);
+        result.p95 = percentile(latencies, 0.95);
+        result.p99 = percentile(latencies, 0.99);
+        result.heapUsedMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1048576.0;
+        result.heapPeakMb = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum() / 1048576.0;
+        result.gcCount = gcCount() - gcCountBefore;
+        result.gcMillis = gcMillis() - gcMillisBefore;
+        return result;
+    }
+
+    private void reindex() throws Exception {
+        HttpResponse<String> response = client.send(reindexRequest(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Initial reindex failed: " + response.statusCode() + " " + response.body());
+        }
+        System.out.println("📄 Initial reindex: " + response.body());
+    }
+
+    /**
+     * Send a request; completes with latency in nanos, or exceptionally on non-2xx.
+     */
+    private CompletableFuture<Long> send(HttpRequest request) {
+        long t0 = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new CompletionException(new IllegalStateException("HTTP " + response.statusCode()));
+                    }
+                    return System.nanoTime() - t0;
+                });
+    }
+
+    private HttpRequest askRequest() {
+        // Vary the question so the LLM response cache does not absorb the load
+        int n = questionCounter.getAndIncrement();
+        String question = QUESTIONS[n % QUESTIONS.length] + " (#" + n + ")";
+        String json = "{\"question\":\"" + question.replace("\"", "\\\"") + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/rag/ask"))
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private HttpRequest reindexRequest() {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + pdfName + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/rag/reindex"))
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, pdfBytes, tail)))
+                .build();
+    }
+
+    private static double percentile(List<Long> sortedNanos, double p) {
+        if (sortedNanos.isEmpty()) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sortedNanos.size() - 1, Math.ceil(p * sortedNanos.size()) - 1);
+        return sortedNanos.get(Math.max(0, index)) / 1e6;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static final class Result {
+        String scenario;
+        int sent;
+        int ok;
+        int askOk;
+        int errors;
+        double throughput;
+        double p50;
+        double p95;
+        double p99;
+        double heapUsedMb;
+        double heapPeakMb;
+        long gcCount;
+        long gcMillis;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local OpenAI-compatible chat completion server for load tests.
+ * Serves POST /v1/chat/completions as SSE chunks with a configurable time to first
+ * token, token rate and answer length. Like OpenAI, it ends the stream with a usage
+ * chunk (empty choices) only when the request sets stream_options.include_usage.
+ * The application always streams, so a non-streaming request is answered with 400.
+ */
+public class StubChatServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long firstTokenMillis;
+    private final double tokensPerSecond;
+    private final int answerTokens;
+    private final AtomicLong requests = new AtomicLong();
+
+    public StubChatServer(int port, long firstTokenMillis, double tokensPerSecond, int answerTokens) throws IOException {
+        this.firstTokenMillis = firstTokenMillis;
+        this.tokensPerSecond = tokensPerSecond;
+        this.answerTokens = answerTokens;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            if (!request.path("stream").asBoolean(false)) {
+                byte[] error = "{\"error\":{\"message\":\"stub only streams\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(400, error.length);
+                exchange.getResponseBody().write(error);
+                return;
+            }
+            String model = request.path("model").asText("stub-model");
+            Integer promptTokens = request.path("stream_options").path("include_usage").asBoolean(false)
+                    ? estimatePromptTokens(request)
+                    : null;
+
+            sleep(firstTokenMillis);
+            stream(exchange, model, promptTokens);
+        }
+    }
+
+    /**
+     * @param promptTokens sent in a final usage chunk, or null to send none
+     */
+    private void stream(HttpExchange exchange, String model, Integer promptTokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String id = "chatcmpl-stub-" + requests.get();
+        long created = System.currentTimeMillis() / 1000;
+
+        for (int i = 0; i < answerTokens; i++) {
+            if (i > 0) {
+                sleep(tokenDelayMillis(1));
+            }
+            Map<String, Object> delta = i == 0
+                    ? Map.of("role", "assistant", "content", "token" + i + " ")
+                    : Map.of("content", "token" + i + " ");
+            Map<String, Object> choice = new LinkedHashMap<>();
+            choice.put("index", 0);
+            choice.put("delta", delta);
+            choice.put("finish_reason", i == answerTokens - 1 ? "stop" : null);
+            Map<String, Object> chunk = new LinkedHashMap<>();
+            chunk.put("id", id);
+            chunk.put("object", "chat.completion.chunk");
+            chunk.put("created", created);
+            chunk.put("model", model);
+            chunk.put("choices", List.of(choice));
+            out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        if (promptTokens != null) {
+            Map<String, Object> chunk = new LinkedHashMap<>();
+            chunk.put("id", id);
+            chunk.put("object", "chat.completion.chunk");
+            chunk.put("created", created);
+            chunk.put("model", model);
+            chunk.put("choices", List.of());
+            chunk.put("usage", Map.of("prompt_tokens", promptTokens, "completion_tokens", answerTokens,
+                    "total_tokens", promptTokens + answerTokens));
+            out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static int estimatePromptTokens(JsonNode request) {
+        int chars = 0;
+        for (JsonNode message : request.path("messages")) {
+            chars += message.path("content").asText("").length();
+        }
+        return Math.max(1, chars / 4);
+    }
+
+    private long tokenDelayMillis(int tokens) {
+        return tokensPerSecond <= 0 ? 0 : (long) (tokens * 1000.0 / tokensPerSecond);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local Hugging Face style feature-extraction server for load tests.
+ * Accepts POST /models/{model} with {"inputs": text} or {"inputs": [texts]} and
+ * returns deterministic vectors after a fixed latency. A vector is the sum of fixed
+ * random vectors of the text's words, so texts sharing words get a positive cosine
+ * similarity and questions retrieve the chunks that mention their terms.
+ */
+public class StubEmbeddingServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int dimension;
+    private final long latencyMillis;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong texts = new AtomicLong();
+    private final Map<String, float[]> wordVectors = new ConcurrentHashMap<>();
+
+    public StubEmbeddingServer(int port, int dimension, long latencyMillis) throws IOException {
+        this.dimension = dimension;
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext("/models/", this::handle);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Base URL to use as huggingface.api.base-url.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/models/";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getTexts() {
+        return texts.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            JsonNode inputs = objectMapper.readTree(exchange.getRequestBody()).path("inputs");
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            Object body;
+            if (inputs.isArray()) {
+                List<float[]> vectors = new ArrayList<>();
+                for (JsonNode input : inputs) {
+                    vectors.add(vector(input.asText()));
+                }
+                texts.addAndGet(vectors.size());
+                body = vectors;
+            } else {
+                texts.incrementAndGet();
+                body = vector(inputs.asText());
+            }
+
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    /**
+     * Same text always maps to the same (unnormalized) vector: the bag of its words.
+     */
+    private float[] vector(String text) {
+        float[] vector = new float[dimension];
+        boolean empty = true;
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            float[] wordVector = wordVectors.computeIfAbsent(word, this::randomVector);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] += wordVector[i];
+            }
+            empty = false;
+        }
+        return empty ? randomVector(text) : vector;
+    }
+
+    private float[] randomVector(String seed) {
+        Random random = new Random(seed.hashCode());
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkPayloadStoreTest {
+
+    // The smallest block size the store accepts
+    private static final int BLOCK_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final List<ChunkPayloadStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(ChunkPayloadStore::close);
+    }
+
+    @Test
+    void roundTripsInEveryStorage() {
+        for (ChunkPayloadStore.Storage storage : ChunkPayloadStore.Storage.values()) {
+            ChunkPayloadStore store = newStore(storage, 4);
+            List<Long> handles = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                handles.add(store.append(content(i), metadata(i)));
+            }
+            long empty = store.append(null, null);
+            assertTrue((int) store.describe().get("sealedBlocks") > 4, storage.name());
+
+            for (int i = 0; i < handles.size(); i++) {
+                ChunkPayloadStore.Payload payload = store.read(handles.get(i));
+                assertEquals(content(i), payload.content(), storage.name());
+                assertEquals(metadata(i), payload.metadata(), storage.name());
+            }
+            assertEquals("", store.read(empty).content());
+            assertEquals(Map.of(), store.read(empty).metadata());
+            assertEquals(2001L, store.describe().get("payloads"));
+        }
+    }
+
+    @Test
+    void tailPayloadReadsTheSameBeforeAndAfterSealing() {
+        ChunkPayloadStore store = newStore(ChunkPayloadStore.Storage.OFFHEAP, 4);
+        List<Long> sealed = new ArrayList<>();
+        int i = 0;
+        while ((int) store.describe().get("sealedBlocks") == 0) {
+            sealed.add(store.append(content(i), metadata(i)));
+            i++;
+        }
+        long inTail = store.append(content(i), metadata(i));
+        assertEquals(0, (int) (sealed.get(0) >>> 32));
+        assertEquals(1, (int) (inTail >>> 32));
+
+        ChunkPayloadStore.Payload fromTail = store.read(inTail);
+        assertEquals(content(i), fromTail.content());
+        assertEquals(metadata(i), fromTail.metadata());
+        assertEquals(content(0), store.read(sealed.get(0)).content());
+
+        // Fill the tail until it is sealed; the handle stays valid
+        int j = i + 1;
+        while ((int) store.describe().get("sealedBlocks") == 1) {
+            store.append(content(j), metadata(j));
+            j++;
+        }
+        assertEquals(fromTail, store.read(inTail));
+    }
+
+    @Test
+    void hotCacheEvictsLeastRecentlyUsedBlock() {
+        ChunkPayloadStore store = newStore(ChunkPayloadStore.Storage.HEAP, 2);
+        long[] firstOfBlock = new long[3];
+        int i = 0;
+        for (int block = 0; block < 3; block++) {
+            firstOfBlock[block] = store.append(content(i), metadata(i));
+            i++;
+            while ((int) store.describe().get("sealedBlocks") == block) {
+                store.append(content(i), metadata(i));
+                i++;
+            }
+        }
+
+        store.read(firstOfBlock[0]);     // miss
+        store.read(firstOfBlock[1]);     // miss
+        store.read(firstOfBlock[0]);     // hit, block 1 is now least recently used
+        store.read(firstOfBlock[2]);     // miss, evicts block 1
+        store.read(firstOfBlock[0]);     // hit
+        store.read(firstOfBlock[1]);     // miss, evicts block 2
+
+        Map<String, Object> info = store.describe();
+        assertEquals("2/2", info.get("hotBlocks"));
+        assertEquals(2.0 / 6, (double) info.get("hotHitRatio"), 1e-9);
+    }
+
+    @Test
+    void clearOnFileStorageTruncatesAndAcceptsNewPayloads() {
+        ChunkPayloadStore store = newStore(ChunkPayloadStore.Storage.FILE, 4);
+        long old = 0;
+        for (int i = 0; i < 500; i++) {
+            long handle = store.append(content(i), metadata(i));
+            if (i == 0) {
+                old = handle;
+            }
+        }
+        // Decoded block 0 is now in the hot cache
+        assertEquals(content(0), store.read(old).content());
+        assertTrue((long) store.describe().get("fileBytes") > 0);
+
+        store.clear();
+        Map<String, Object> cleared = store.describe();
+        assertEquals(0L, cleared.get("payloads"));
+        assertEquals(0, cleared.get("sealedBlocks"));
+        assertEquals(0L, cleared.get("fileBytes"));
+        assertEquals("0/4", cleared.get("hotBlocks"));
+
+        // New block 0 must be read from the rewritten file, not from the stale cache entry
+        List<Long> handles = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            handles.add(store.append("sau khi xoá " + content(i), metadata(i)));
+        }
+        assertEquals(old, (long) handles.get(0));
+        for (int i = 0; i < handles.size(); i++) {
+            assertEquals("sau khi xoá " + content(i), store.read(handles.get(i)).content());
+        }
+    }
+
+    @Test
+    void cursorReadsEveryPayloadWithoutTouchingTheHotCache() {
+        for (ChunkPayloadStore.Storage storage : ChunkPayloadStore.Storage.values()) {
+            ChunkPayloadStore store = newStore(storage, 2);
+            List<Long> handles = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                handles.add(store.append(content(i), metadata(i)));
+            }
+            store.read(handles.get(0));
+
+            ChunkPayloadStore.Cursor cursor = store.cursor();
+            for (int i = 0; i < handles.size(); i++) {
+                ChunkPayloadStore.Payload payload = cursor.read(handles.get(i));
+                assertEquals(content(i), payload.content(), storage.name());
+                assertEquals(metadata(i), payload.metadata(), storage.name());
+            }
+            Map<String, Object> info = store.describe();
+            assertEquals("1/2", info.get("hotBlocks"), storage.name());
+            assertEquals(0.0, (double) info.get("hotHitRatio"), 1e-9, storage.name());
+
+            // Handles taken before clear() point to other payloads afterwards
+            store.clear();
+            store.append(content(0), metadata(0));
+            assertThrows(IllegalStateException.class, () -> cursor.read(handles.get(0)));
+        }
+    }
+
+    @Test
+    void readsAreSafeWhileAppending() throws Exception {
+        ChunkPayloadStore store = newStore(ChunkPayloadStore.Storage.FILE, 2);
+        List<Long> handles = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            handles.add(store.append(content(i), metadata(i)));
+        }
+        List<Long> published = Collections.synchronizedList(new ArrayList<>(handles));
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                for (int i = 200; i < 20000; i++) {
+                    published.add(store.append(content(i), metadata(i)));
+                }
+                writing.set(false);
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                int seed = r;
+                readers.add(pool.submit(() -> {
+                    int n = seed;
+                    while (writing.get()) {
+                        int size = published.size();
+                        // The newest handles are usually still in the tail block
+                        int i = n++ % 2 == 0 ? size - 1 : Math.floorMod(n * 7919, size);
+                        assertEquals(content(i), store.read(published.get(i)).content());
+                    }
+                }));
+            }
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ChunkPayloadStore newStore(ChunkPayloadStore.Storage storage, int hotBlocks) {
+        ChunkPayloadStore store = new ChunkPayloadStore(storage, BLOCK_BYTES, hotBlocks, directory);
+        stores.add(store);
+        return store;
+    }
+
+    private static String content(int i) {
+        return "Đoạn " + i + ": doanh thu quý " + (i % 4 + 1) + " tăng " + (i * 37 % 100) + "% so với cùng kỳ.";
+    }
+
+    private static Map<String, Object> metadata(int i) {
+        return Map.of("file_name", "report-" + (i % 3) + ".pdf", "page_number", i / 10 + 1,
+                "tags", List.of("finance", "q" + (i % 4 + 1)));
+    }
+}
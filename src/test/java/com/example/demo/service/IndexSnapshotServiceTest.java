@@ -0,0 +1,322 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexSnapshotServiceTest {
+
+    private static final String MODEL = "intfloat/multilingual-e5-small";
+    private static final int DIM = 8;
+    // magic + version + UTF model name + dimension + count + flags
+    private static final int HEADER_BYTES = 4 + 2 + 2 + MODEL.length() + 4 + 4 + 1;
+    private static final int COUNT_OFFSET = HEADER_BYTES - 5;
+    private static final int FLAGS_OFFSET = HEADER_BYTES - 1;
+
+    private EmbeddingModelRegistry registry;
+    private InMemoryVectorStore source;
+    private List<float[]> vectors;
+    private List<String> contents;
+
+    @BeforeEach
+    void setUp() {
+        registry = registry(MODEL, DIM);
+        source = new InMemoryVectorStore(null, registry);
+        vectors = new ArrayList<>();
+        contents = new ArrayList<>();
+        List<Document> documents = new ArrayList<>();
+        Random random = new Random(5);
+        // Enough text for several 64 KB payload blocks
+        for (int i = 0; i < 3000; i++) {
+            contents.add("Đoạn " + i + ": doanh thu quý " + (i % 4 + 1) + " tăng " + random.nextInt(100) + "% so với cùng kỳ.");
+            documents.add(new Document("chunk-" + i, contents.get(i), Map.of("file_name", "report-" + (i % 3) + ".pdf", "page_number", i / 10 + 1)));
+            float[] vector = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        source.addEmbedded(documents, vectors);
+    }
+
+    @Test
+    void roundTripRestoresEveryRow() throws Exception {
+        byte[] snapshot = export(source);
+
+        InMemoryVectorStore target = new InMemoryVectorStore(null, registry);
+        assertEquals(3000, service(target).importSnapshot(new ByteArrayInputStream(snapshot), snapshot.length));
+
+        assertEquals(3000, target.size());
+        assertEquals(MODEL, target.getModel());
+        assertEquals(DIM, target.getDimension());
+        for (int i = 0; i < 3000; i += 97) {
+            Document hit = target.similaritySearch(vectors.get(i), 1, -1).get(0);
+            Document original = source.similaritySearch(vectors.get(i), 1, -1).get(0);
+            assertEquals("chunk-" + i, hit.getId());
+            assertEquals(original.getContent(), hit.getContent());
+            assertEquals(original.getMetadata(), hit.getMetadata());
+        }
+    }
+
+    @Test
+    void roundTripOfEmptyIndex() throws Exception {
+        byte[] snapshot = export(new InMemoryVectorStore(null, registry));
+        InMemoryVectorStore target = new InMemoryVectorStore(null, registry);
+        assertEquals(0, service(target).importSnapshot(new ByteArrayInputStream(snapshot), -1));
+        assertEquals(0, target.size());
+    }
+
+    @Test
+    void rejectsTruncatedSnapshot() throws Exception {
+        byte[] snapshot = export(source);
+        int vectorsEnd = HEADER_BYTES + 3000 * DIM * Float.BYTES;
+        for (int length : new int[]{3, HEADER_BYTES - 1, HEADER_BYTES + 100, vectorsEnd + 4, vectorsEnd + 5000,
+                snapshot.length - 9, snapshot.length - 1}) {
+            byte[] truncated = Arrays.copyOf(snapshot, length);
+            assertRejected(truncated, truncated.length);
+            // Unknown size: the stream simply ends early
+            assertRejected(truncated, -1);
+        }
+    }
+
+    @Test
+    void rejectsCorruptedChecksum() throws Exception {
+        byte[] snapshot = export(source);
+
+        byte[] vectorFlip = snapshot.clone();
+        vectorFlip[HEADER_BYTES + 17] ^= 0x01;
+        assertEquals("Snapshot checksum mismatch", assertRejected(vectorFlip, vectorFlip.length).getMessage());
+
+        byte[] trailerFlip = snapshot.clone();
+        trailerFlip[trailerFlip.length - 1] ^= 0x01;
+        assertEquals("Snapshot checksum mismatch", assertRejected(trailerFlip, trailerFlip.length).getMessage());
+    }
+
+    @Test
+    void rejectsOversizedCountsAndLengthsBeforeAllocating() throws Exception {
+        byte[] snapshot = export(source);
+        int blockOffset = HEADER_BYTES + 3000 * DIM * Float.BYTES;
+
+        // count x dimension larger than the file
+        assertRejected(patchInt(snapshot, COUNT_OFFSET, Integer.MAX_VALUE), snapshot.length);
+        assertRejected(patchInt(snapshot, COUNT_OFFSET, -1), snapshot.length);
+        // dimension out of range
+        assertRejected(patchInt(snapshot, COUNT_OFFSET - 4, 0), snapshot.length);
+        assertRejected(patchInt(snapshot, COUNT_OFFSET - 4, 1 << 20), snapshot.length);
+        // compressed block longer than the rest of the file
+        assertRejected(patchInt(snapshot, blockOffset + 4, Integer.MAX_VALUE), snapshot.length);
+        // raw length beyond what deflate can produce from the compressed bytes
+        assertRejected(patchInt(snapshot, blockOffset, Integer.MAX_VALUE), snapshot.length);
+        // raw length that does not match the inflated bytes
+        int rawLength = ByteBuffer.wrap(snapshot, blockOffset, 4).getInt();
+        assertEquals("Corrupt snapshot payload (raw length mismatch)",
+                assertRejected(patchInt(snapshot, blockOffset, rawLength + 1), -1).getMessage());
+        assertEquals("Corrupt snapshot payload (raw length mismatch)",
+                assertRejected(patchInt(snapshot, blockOffset, rawLength - 1), -1).getMessage());
+        // fewer chunks in the header than in the payload
+        assertRejected(patchInt(snapshot, COUNT_OFFSET, 2999), snapshot.length);
+
+        // The configured cap on inflated payload bytes
+        InMemoryVectorStore target = new InMemoryVectorStore(null, registry);
+        IndexSnapshotService capped = service(target);
+        ReflectionTestUtils.setField(capped, "maxInflatedBytes", 1024L);
+        assertThrows(IllegalArgumentException.class,
+                () -> capped.importSnapshot(new ByteArrayInputStream(snapshot), snapshot.length));
+        // And on the file itself when the size is unknown
+        ReflectionTestUtils.setField(capped, "maxBytes", 1024L);
+        assertThrows(IllegalArgumentException.class,
+                () -> capped.importSnapshot(new ByteArrayInputStream(snapshot), -1));
+        assertEquals(0, target.size());
+    }
+
+    @Test
+    void rejectsOtherModelOrDimension() throws Exception {
+        byte[] snapshot = export(source);
+
+        registry = registry("BAAI/bge-m3", DIM);
+        IllegalArgumentException e = assertRejected(snapshot, snapshot.length);
+        assertTrue(e.getMessage().startsWith("Incompatible vectors"), e.getMessage());
+
+        registry = registry(MODEL, 16);
+        e = assertRejected(snapshot, snapshot.length);
+        assertTrue(e.getMessage().startsWith("Incompatible vectors"), e.getMessage());
+    }
+
+    @Test
+    void rejectsOtherVersionAndMagic() throws Exception {
+        byte[] snapshot = export(source);
+        byte[] version = snapshot.clone();
+        version[5] = 1;
+        assertTrue(assertRejected(version, version.length).getMessage().startsWith("Unsupported snapshot version"));
+
+        byte[] text = "not a snapshot at all".getBytes(StandardCharsets.UTF_8);
+        assertRejected(text, text.length);
+    }
+
+    @Test
+    void rejectsUnknownFlags() throws Exception {
+        byte[] snapshot = export(source);
+        byte[] flags = snapshot.clone();
+        flags[FLAGS_OFFSET] = 0x02;
+        CRC32 crc = new CRC32();
+        crc.update(flags, 0, flags.length - Long.BYTES);
+        ByteBuffer.wrap(flags).putLong(flags.length - Long.BYTES, crc.getValue());
+        assertTrue(assertRejected(flags, flags.length).getMessage().startsWith("Corrupt snapshot (unknown flags"));
+    }
+
+    @Test
+    void trainedIndexExportIsFlaggedLossyAndNeverTrainedOn() throws Exception {
+        InMemoryVectorStore trained = ivfPqStore(null);
+        trained.addEmbedded(documents(), vectors);
+        assertTrue(trained.trainIndex());
+        byte[] snapshot = export(trained);
+        assertEquals(1, snapshot[FLAGS_OFFSET]);
+
+        // Imported as is, but an IVF-PQ store must not fit a codebook on reconstructions
+        InMemoryVectorStore target = ivfPqStore(null);
+        assertEquals(3000, service(target).importSnapshot(new ByteArrayInputStream(snapshot), snapshot.length));
+        assertEquals(Boolean.TRUE, target.describeIndex().get("lossyVectors"));
+        assertFalse(target.trainIndex());
+        assertFalse(target.trainIndexAsync());
+        assertEquals(Boolean.FALSE, target.describeIndex().get("trained"));
+        // Re-exporting keeps the flag
+        assertEquals(1, export(target)[FLAGS_OFFSET]);
+
+        // Until the store is cleared and refilled with real embeddings
+        target.clear();
+        target.addEmbedded(documents(), vectors);
+        assertEquals(Boolean.FALSE, target.describeIndex().get("lossyVectors"));
+        assertTrue(target.trainIndex());
+        trained.close();
+        target.close();
+    }
+
+    @Test
+    void trainedIndexWithFullPrecisionExportsExactVectors() throws Exception {
+        InMemoryVectorStore trained = ivfPqStore(new VectorSpill(ChunkPayloadStore.Storage.HEAP, null));
+        trained.addEmbedded(documents(), vectors);
+        assertTrue(trained.trainIndex());
+        // Retraining a trained index works when it keeps full precision
+        assertTrue(trained.trainIndex());
+        byte[] snapshot = export(trained);
+        assertEquals(0, snapshot[FLAGS_OFFSET]);
+
+        InMemoryVectorStore target = new InMemoryVectorStore(null, registry);
+        service(target).importSnapshot(new ByteArrayInputStream(snapshot), snapshot.length);
+        for (int i = 0; i < 3000; i += 97) {
+            Document hit = target.similaritySearch(vectors.get(i), 1, -1).get(0);
+            assertEquals("chunk-" + i, hit.getId());
+            assertEquals(1.0, (double) hit.getMetadata().get("score"), 1e-5);
+        }
+        trained.close();
+    }
+
+    @Test
+    void rowViewIsPointInTimeAndDoesNotBlockWrites() {
+        try (InMemoryVectorStore.RowView rows = source.rowView()) {
+            // Same thread: these writes would deadlock if the view still held the read lock
+            source.delete(List.of("chunk-0", "chunk-1"));
+            source.addEmbedded(List.of(new Document("chunk-2", "thay thế", Map.of())), List.of(vectors.get(0)));
+            source.addEmbedded(List.of(new Document("chunk-new", "mới", Map.of())), List.of(vectors.get(1)));
+
+            assertEquals(3000, rows.size());
+            assertEquals(MODEL, rows.model());
+            assertFalse(rows.lossy());
+            for (int i = 0; i < rows.size(); i++) {
+                int chunk = Integer.parseInt(rows.id(i).substring("chunk-".length()));
+                assertEquals(contents.get(chunk), rows.payload(i).content());
+                assertArrayEquals(vectors.get(chunk), rows.vector(i));
+            }
+        }
+    }
+
+    @Test
+    void rowViewFailsOnceTheStoreIsCleared() {
+        try (InMemoryVectorStore.RowView rows = source.rowView()) {
+            source.clear();
+            assertThrows(IllegalStateException.class, () -> rows.payload(0));
+        }
+    }
+
+    @Test
+    void failedImportKeepsCurrentIndex() throws Exception {
+        byte[] snapshot = export(source);
+        byte[] corrupt = snapshot.clone();
+        corrupt[HEADER_BYTES + 3] ^= 0x40;
+
+        InMemoryVectorStore target = new InMemoryVectorStore(null, registry);
+        target.addEmbedded(List.of(new Document("kept", "giữ nguyên", Map.of())), List.of(vectors.get(0)));
+        IndexSnapshotService service = service(target);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.importSnapshot(new ByteArrayInputStream(corrupt), corrupt.length));
+        assertEquals(1, target.size());
+        assertEquals("kept", target.similaritySearch(vectors.get(0), 1, -1).get(0).getId());
+    }
+
+    private InMemoryVectorStore ivfPqStore(VectorSpill fullPrecision) {
+        return new InMemoryVectorStore(null, registry, new IvfPqVectorIndex(16, 4, 4, 0, 3000, 8, fullPrecision),
+                new ChunkPayloadStore(ChunkPayloadStore.Storage.HEAP, 64 * 1024, 8, null));
+    }
+
+    private List<Document> documents() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            documents.add(new Document("chunk-" + i, "Đoạn " + i, Map.of("file_name", "report.pdf")));
+        }
+        return documents;
+    }
+
+    private IllegalArgumentException assertRejected(byte[] snapshot, long size) {
+        InMemoryVectorStore target = new InMemoryVectorStore(null, registry);
+        IndexSnapshotService service = service(target);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.importSnapshot(new ByteArrayInputStream(snapshot), size));
+        assertEquals(0, target.size());
+        return e;
+    }
+
+    private byte[] export(InMemoryVectorStore store) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service(store).exportSnapshot(out);
+        return out.toByteArray();
+    }
+
+    private IndexSnapshotService service(InMemoryVectorStore store) {
+        IndexSnapshotService service = new IndexSnapshotService(store, registry, new QueryPrefetchService(null, null));
+        ReflectionTestUtils.setField(service, "maxBytes", 1L << 31);
+        ReflectionTestUtils.setField(service, "maxInflatedBytes", 1L << 30);
+        return service;
+    }
+
+    private static EmbeddingModelRegistry registry(String model, int dimension) {
+        EmbeddingModelRegistry registry = new EmbeddingModelRegistry(null);
+        ReflectionTestUtils.setField(registry, "spec", new EmbeddingModelRegistry.ModelSpec(model, dimension, dimension));
+        return registry;
+    }
+
+    /**
+     * Overwrite one int and re-seal the CRC32 trailer, so only the targeted check can reject it.
+     */
+    private static byte[] patchInt(byte[] snapshot, int offset, int value) {
+        byte[] patched = snapshot.clone();
+        ByteBuffer.wrap(patched).putInt(offset, value);
+        CRC32 crc = new CRC32();
+        crc.update(patched, 0, patched.length - Long.BYTES);
+        ByteBuffer.wrap(patched).putLong(patched.length - Long.BYTES, crc.getValue());
+        return patched;
+    }
+}
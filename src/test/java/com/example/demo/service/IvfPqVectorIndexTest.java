@@ -0,0 +1,189 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IvfPqVectorIndexTest {
+
+    private static final int DIM = 64;
+    private static final int TOP_K = 10;
+
+    @Test
+    void recallAt10AgainstFlatIndex() {
+        Random random = new Random(7);
+        List<float[]> data = clustered(random, 5000, 40);
+        List<float[]> queries = clustered(random, 200, 40);
+
+        FlatVectorIndex flat = new FlatVectorIndex();
+        IvfPqVectorIndex ivf = new IvfPqVectorIndex(0, 16, 8, 0, 5000, 15);
+        for (float[] v : data) {
+            flat.add(v);
+            ivf.add(v);
+        }
+        train(ivf);
+        assertTrue(ivf.isTrained());
+        assertEquals(16 + 12, ivf.bytesPerVector());
+
+        double recall = recall(flat, ivf, queries);
+        assertTrue(recall >= 0.6, "recall@10 = " + recall);
+
+        // More probed lists can only find more of the true neighbours
+        IvfPqVectorIndex wide = new IvfPqVectorIndex(0, 16, 64, 0, 5000, 15);
+        data.forEach(wide::add);
+        train(wide);
+        assertTrue(recall(flat, wide, queries) >= recall - 0.02);
+    }
+
+    @Test
+    void untrainedSearchIsExact() {
+        Random random = new Random(3);
+        List<float[]> data = clustered(random, 500, 10);
+        FlatVectorIndex flat = new FlatVectorIndex();
+        IvfPqVectorIndex ivf = new IvfPqVectorIndex(0, 8, 4, 0, 1000, 10);
+        for (float[] v : data) {
+            flat.add(v);
+            ivf.add(v);
+        }
+        for (float[] q : clustered(random, 20, 10)) {
+            assertEquals(slots(flat.search(q, TOP_K, -1)), slots(ivf.search(q, TOP_K, -1)));
+        }
+    }
+
+    @Test
+    void retrainIsRefusedOnceTrainedWithoutFullPrecision() {
+        IvfPqVectorIndex ivf = new IvfPqVectorIndex(0, 8, 4, 0, 1000, 5);
+        clustered(new Random(1), 1000, 10).forEach(ivf::add);
+        assertTrue(ivf.canTrain());
+        train(ivf);
+
+        assertFalse(ivf.canTrain());
+        assertTrue(ivf.isLossy());
+        assertThrows(IllegalStateException.class, ivf::trainingSample);
+
+        ivf.clear();
+        clustered(new Random(2), 1000, 10).forEach(ivf::add);
+        assertTrue(ivf.canTrain());
+    }
+
+    @Test
+    void retrainFromFullPrecisionVectorsDoesNotCompoundError() {
+        Random random = new Random(13);
+        List<float[]> data = clustered(random, 4000, 40);
+        List<float[]> queries = clustered(random, 200, 40);
+        IvfPqVectorIndex ivf = new IvfPqVectorIndex(0, 16, 8, 0, 4000, 15,
+                new VectorSpill(ChunkPayloadStore.Storage.OFFHEAP, null));
+        FlatVectorIndex flat = new FlatVectorIndex();
+        for (float[] v : data.subList(0, 3000)) {
+            flat.add(v);
+            ivf.add(v);
+        }
+        train(ivf);
+        assertFalse(ivf.isLossy());
+        assertTrue(ivf.canTrain());
+
+        // Mutations after training reach the full-precision copy too
+        for (float[] v : data.subList(3000, 4000)) {
+            flat.add(v);
+            ivf.add(v);
+        }
+        flat.set(5, data.get(3999));
+        ivf.set(5, data.get(3999));
+        flat.swapRemove(17);
+        ivf.swapRemove(17);
+        for (int slot : new int[]{0, 5, 17, 2500, ivf.size() - 1}) {
+            assertArrayEquals(normalized(flat.vector(slot)), ivf.vector(slot), 1e-6f);
+        }
+
+        double first = recall(flat, ivf, queries);
+        for (int i = 0; i < 3; i++) {
+            train(ivf);
+        }
+        double retrained = recall(flat, ivf, queries);
+        assertTrue(retrained >= first - 0.05, "recall@10 " + first + " -> " + retrained);
+        assertEquals(3999, ivf.size());
+        assertEquals(3999, ivf.describe().get("trainedOn"));
+    }
+
+    @Test
+    void addAndRemoveAfterTrainingKeepSlotsConsistent() {
+        Random random = new Random(11);
+        IvfPqVectorIndex ivf = new IvfPqVectorIndex(0, 16, 64, 0, 2000, 10);
+        clustered(random, 2000, 20).forEach(ivf::add);
+        train(ivf);
+
+        float[] extra = clustered(random, 1, 20).get(0);
+        ivf.add(extra);
+        assertEquals(2001, ivf.size());
+        assertEquals(2000, ivf.search(extra, 1, -1).slots()[0]);
+
+        // Swap-remove moves the last vector into slot 0
+        ivf.swapRemove(0);
+        assertEquals(2000, ivf.size());
+        assertEquals(0, ivf.search(extra, 1, -1).slots()[0]);
+    }
+
+    private static void train(IvfPqVectorIndex ivf) {
+        IvfPqVectorIndex.Quantizer quantizer = ivf.fit(ivf.trainingSample());
+        ivf.install(quantizer, ivf.encodeAll(quantizer));
+    }
+
+    private static double recall(VectorIndex exact, VectorIndex approximate, List<float[]> queries) {
+        int found = 0;
+        for (float[] q : queries) {
+            Set<Integer> truth = slots(exact.search(q, TOP_K, -1));
+            for (int slot : approximate.search(q, TOP_K, -1).slots()) {
+                if (truth.contains(slot)) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries.size() * TOP_K);
+    }
+
+    private static float[] normalized(float[] vector) {
+        double norm = Math.sqrt(FlatVectorIndex.dot(vector, vector));
+        float[] out = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            out[i] = (float) (vector[i] / norm);
+        }
+        return out;
+    }
+
+    private static Set<Integer> slots(VectorIndex.Hits hits) {
+        Set<Integer> slots = new HashSet<>();
+        for (int slot : hits.slots()) {
+            slots.add(slot);
+        }
+        return slots;
+    }
+
+    /**
+     * Gaussian blobs around fixed random centers, like embeddings of a few topics.
+     */
+    private static List<float[]> clustered(Random random, int n, int clusters) {
+        Random centers = new Random(clusters);
+        float[][] center = new float[clusters][DIM];
+        for (float[] c : center) {
+            for (int d = 0; d < DIM; d++) {
+                c[d] = (float) centers.nextGaussian();
+            }
+        }
+        List<float[]> vectors = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            float[] c = center[random.nextInt(clusters)];
+            float[] v = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                v[d] = c[d] + 0.35f * (float) random.nextGaussian();
+            }
+            vectors.add(v);
+        }
+        return vectors;
+    }
+}
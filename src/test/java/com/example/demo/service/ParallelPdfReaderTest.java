@@ -0,0 +1,164 @@
+package com.example.demo.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelPdfReaderTest {
+
+    private static final Path SAMPLE = Path.of("sample_rag_document.pdf");
+
+    private ParallelPdfReader reader;
+
+    @AfterEach
+    void tearDown() {
+        if (reader != null) {
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    void matchesPagePdfDocumentReaderOnSample() throws Exception {
+        reader = newReader(4, 1);
+        List<Document> parallel = readAll(Files.readAllBytes(SAMPLE));
+
+        List<Document> sequential = new PagePdfDocumentReader(new FileSystemResource(SAMPLE)).get().stream()
+                .filter(d -> !d.getContent().isBlank())
+                .toList();
+
+        assertFalse(parallel.isEmpty());
+        assertEquals(pageNumbers(sequential), pageNumbers(parallel));
+        for (int i = 0; i < parallel.size(); i++) {
+            // The layout stripper pads columns with spaces; compare the text itself
+            assertEquals(squash(sequential.get(i).getContent()), squash(parallel.get(i).getContent()),
+                    "page " + pageNumbers(parallel).get(i));
+        }
+    }
+
+    @Test
+    void rangeSizeDoesNotChangeOutput() throws Exception {
+        byte[] pdf = Files.readAllBytes(SAMPLE);
+        reader = newReader(1, 1000);
+        List<Document> single = readAll(pdf);
+        reader.shutdown();
+
+        reader = newReader(4, 1);
+        List<Document> ranged = readAll(pdf);
+
+        assertEquals(pageNumbers(single), pageNumbers(ranged));
+        assertEquals(single.stream().map(Document::getContent).toList(), ranged.stream().map(Document::getContent).toList());
+    }
+
+    @Test
+    void readsSinglePagePdf() throws Exception {
+        reader = newReader(4, 16);
+        List<Document> pages = readAll(pdfWithPages(1, null));
+
+        assertEquals(1, pages.size());
+        assertEquals(1, pages.get(0).getMetadata().get(ParallelPdfReader.METADATA_PAGE_NUMBER));
+        assertEquals("test.pdf", pages.get(0).getMetadata().get(ParallelPdfReader.METADATA_FILE_NAME));
+        assertTrue(pages.get(0).getContent().contains("Page 1"));
+    }
+
+    @Test
+    void readsOwnerPasswordOnlyPdf() throws Exception {
+        reader = newReader(2, 1);
+        byte[] pdf = pdfWithPages(3, new StandardProtectionPolicy("owner", "", new AccessPermission()));
+
+        assertEquals(List.of(1, 2, 3), pageNumbers(readAll(pdf)));
+    }
+
+    @Test
+    void rejectsUserPasswordPdf() throws Exception {
+        reader = newReader(2, 1);
+        byte[] pdf = pdfWithPages(2, new StandardProtectionPolicy("owner", "secret", new AccessPermission()));
+
+        assertThrows(IllegalArgumentException.class, () -> reader.read(pdf, "test.pdf", pages -> { }));
+    }
+
+    @Test
+    void matchesPlainStripperPageByPage() throws Exception {
+        byte[] pdf = pdfWithPages(5, null);
+        reader = newReader(3, 2);
+        List<Document> pages = readAll(pdf);
+
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);
+            for (int page = 1; page <= 5; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                assertEquals(stripper.getText(document).trim(), pages.get(page - 1).getContent());
+            }
+        }
+    }
+
+    private static ParallelPdfReader newReader(int parallelism, int pagesPerRange) {
+        ParallelPdfReader reader = new ParallelPdfReader();
+        ReflectionTestUtils.setField(reader, "parallelism", parallelism);
+        ReflectionTestUtils.setField(reader, "pagesPerRange", pagesPerRange);
+        ReflectionTestUtils.setField(reader, "maxMemoryMb", 64L);
+        reader.init();
+        return reader;
+    }
+
+    private List<Document> readAll(byte[] pdf) throws Exception {
+        List<Document> all = new ArrayList<>();
+        int extracted = reader.read(pdf, "test.pdf", all::addAll);
+        assertEquals(all.size(), extracted);
+        return all;
+    }
+
+    private static List<Integer> pageNumbers(List<Document> pages) {
+        return pages.stream()
+                .map(d -> ((Number) d.getMetadata().get(ParallelPdfReader.METADATA_PAGE_NUMBER)).intValue())
+                .toList();
+    }
+
+    private static String squash(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+
+    private static byte[] pdfWithPages(int pages, StandardProtectionPolicy protection) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + i + " of the test document.");
+                    content.endText();
+                }
+            }
+            if (protection != null) {
+                document.protect(protection);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
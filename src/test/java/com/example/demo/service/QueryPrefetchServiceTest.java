@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryPrefetchServiceTest {
+
+    private HuggingFaceEmbeddingModelAdapter embeddingModel;
+    private SearchableVectorStore vectorStore;
+    private QueryPrefetchService service;
+
+    @BeforeEach
+    void setUp() {
+        embeddingModel = mock(HuggingFaceEmbeddingModelAdapter.class);
+        vectorStore = mock(SearchableVectorStore.class);
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f});
+        when(vectorStore.similaritySearch(any(float[].class), anyInt(), anyDouble()))
+                .thenReturn(List.of(new Document("chunk-1", "Doanh thu quý 1", Map.of())));
+
+        service = new QueryPrefetchService(embeddingModel, vectorStore);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "ttlSeconds", 120L);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "maxEditDistance", 2);
+        ReflectionTestUtils.setField(service, "minChars", 8);
+        ReflectionTestUtils.setField(service, "topK", 5);
+        ReflectionTestUtils.setField(service, "minScore", 0.35);
+    }
+
+    // ===== Distance and reuse rule =====
+
+    @Test
+    void editDistanceMatchesDefinition() {
+        assertTrue(QueryPrefetchService.withinEditDistance("", "", 0));
+        assertTrue(QueryPrefetchService.withinEditDistance("kitten", "kitten", 0));
+        assertFalse(QueryPrefetchService.withinEditDistance("kitten", "sitten", 0));
+        assertTrue(QueryPrefetchService.withinEditDistance("kitten", "sitten", 1));
+        // kitten → sitting is 3 edits
+        assertFalse(QueryPrefetchService.withinEditDistance("kitten", "sitting", 2));
+        assertTrue(QueryPrefetchService.withinEditDistance("kitten", "sitting", 3));
+        // Insertions/deletions at either end
+        assertTrue(QueryPrefetchService.withinEditDistance("doanh thu", "doanh thu q", 2));
+        assertFalse(QueryPrefetchService.withinEditDistance("doanh thu", "doanh thu quy", 2));
+        assertTrue(QueryPrefetchService.withinEditDistance("abc", "", 3));
+        assertFalse(QueryPrefetchService.withinEditDistance("abcd", "", 3));
+    }
+
+    @Test
+    void normalizeIgnoresCasePunctuationAndSpacing() {
+        assertEquals("doanh thu quý 1 là bao nhiêu",
+                QueryPrefetchService.normalize("  Doanh thu QUÝ 1   là bao nhiêu?? "));
+        assertEquals("", QueryPrefetchService.normalize(null));
+    }
+
+    @Test
+    void numbersMustMatchForReuse() {
+        assertEquals(List.of("1", "2023", "12", "5"), QueryPrefetchService.numbers("quý 1 năm 2023, 12.5%"));
+
+        assertTrue(QueryPrefetchService.canReuse("doanh thu quý 1 là", "doanh thu quy 1 la", 2));
+        assertFalse(QueryPrefetchService.canReuse("doanh thu quý 1", "doanh thu quý 3", 2));
+        assertFalse(QueryPrefetchService.canReuse("báo cáo năm 2023", "báo cáo năm 2024", 2));
+        assertFalse(QueryPrefetchService.canReuse("điều 12 quy định gì", "điều 1 quy định gì", 2));
+        assertFalse(QueryPrefetchService.canReuse("điều 12 quy định gì", "điều 21 quy định gì", 2));
+    }
+
+    // ===== Service behaviour =====
+
+    @Test
+    void reusesExactAndNearMatchesOnly() {
+        assertTrue(service.prefetch("Doanh thu quý 1 năm 2023 là bao nhiêu"));
+
+        QueryPrefetchService.Prefetched exact = service.lookup("doanh thu quý 1 năm 2023 là bao nhiêu?").orElseThrow();
+        assertTrue(exact.exact());
+        QueryPrefetchService.Prefetched near = service.lookup("Doanh thu quy 1 năm 2023 la bao nhiêu").orElseThrow();
+        assertFalse(near.exact());
+
+        assertTrue(service.lookup("Doanh thu quý 3 năm 2023 là bao nhiêu").isEmpty());
+        assertTrue(service.lookup("Doanh thu quý 1 năm 2024 là bao nhiêu").isEmpty());
+        assertTrue(service.lookup("Lợi nhuận quý 1 năm 2023 là bao nhiêu").isEmpty());
+
+        assertEquals(1, service.getStats().getExactHits());
+        assertEquals(1, service.getStats().getNearHits());
+        assertEquals(3, service.getStats().getMisses());
+    }
+
+    @Test
+    void shortQuestionsAreNotPrefetched() {
+        assertFalse(service.prefetch("quý 1"));
+        assertTrue(service.lookup("quý 1").isEmpty());
+    }
+
+    @Test
+    void invalidateDropsEntries() {
+        service.prefetch("Doanh thu quý 1 năm 2023");
+        service.invalidate();
+        assertTrue(service.lookup("Doanh thu quý 1 năm 2023").isEmpty());
+    }
+
+    @Test
+    void prefetchRacingAnInvalidationIsDiscarded() {
+        // The index changes (reindex / import) while the prefetch search is running
+        when(vectorStore.similaritySearch(any(float[].class), anyInt(), anyDouble())).thenAnswer(invocation -> {
+            service.invalidate();
+            return List.of(new Document("old-chunk", "stale", Map.of()));
+        });
+
+        assertFalse(service.prefetch("Doanh thu quý 1 năm 2023"));
+        assertTrue(service.lookup("Doanh thu quý 1 năm 2023").isEmpty());
+        assertEquals(0, service.getStats().getEntries());
+    }
+}
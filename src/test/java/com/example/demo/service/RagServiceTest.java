@@ -0,0 +1,102 @@
+package com.example.demo.service;
+
+import com.example.demo.loadtest.StubChatServer;
+import com.example.demo.model.AskResponse;
+import com.example.demo.model.LlmCacheStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * RagService against the local streaming chat stub: the real Spring AI OpenAI client,
+ * an in-memory store with one chunk and a fixed query embedding.
+ */
+class RagServiceTest {
+
+    private static final String QUESTION = "Doanh thu quý 1 năm 2023 là bao nhiêu?";
+
+    private StubChatServer chatServer;
+    private LlmResponseCache responseCache;
+    private RagService ragService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        chatServer = new StubChatServer(0, 0, 0, 20);
+        chatServer.start();
+        OpenAiApi openAiApi = new OpenAiApi("http://127.0.0.1:" + chatServer.getPort(), "stub");
+        ChatClient chatClient = ChatClient.create(new OpenAiChatModel(openAiApi));
+
+        EmbeddingModelRegistry registry = new EmbeddingModelRegistry(null);
+        ReflectionTestUtils.setField(registry, "spec", new EmbeddingModelRegistry.ModelSpec("stub-embedding", 4, 4));
+        InMemoryVectorStore vectorStore = new InMemoryVectorStore(null, registry);
+        vectorStore.addEmbedded(
+                List.of(new Document("chunk-1", "Doanh thu quý 1 năm 2023 đạt 120 tỷ đồng.", Map.of("file_name", "report.pdf"))),
+                List.of(new float[]{1f, 0f, 0f, 0f}));
+
+        HuggingFaceEmbeddingModelAdapter embeddingModel = mock(HuggingFaceEmbeddingModelAdapter.class);
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f, 0f, 0f});
+
+        responseCache = new LlmResponseCache();
+        ReflectionTestUtils.setField(responseCache, "enabled", true);
+        ReflectionTestUtils.setField(responseCache, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 100);
+
+        ragService = new RagService(chatClient, vectorStore, null, responseCache,
+                new QueryPrefetchService(null, null), embeddingModel, new TimingAggregator());
+        ReflectionTestUtils.setField(ragService, "chatModel", "stub-model");
+        ReflectionTestUtils.setField(ragService, "temperature", 0.0);
+        ReflectionTestUtils.setField(ragService, "maxTokens", 100);
+        ReflectionTestUtils.setField(ragService, "topK", 5);
+        ReflectionTestUtils.setField(ragService, "minScore", 0.35);
+        ReflectionTestUtils.setField(ragService, "chunkSize", 800);
+        ReflectionTestUtils.setField(ragService, "chunkOverlap", 100);
+        ReflectionTestUtils.setField(ragService, "batchMaxConcurrency", 2);
+        ReflectionTestUtils.setField(ragService, "batchMaxQuestions", 10);
+        ragService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ragService.shutdown();
+        chatServer.close();
+    }
+
+    @Test
+    void streamedAnswerRecordsProviderUsage() throws Exception {
+        AskResponse response = ragService.ask(QUESTION);
+
+        assertTrue(response.getAnswer().startsWith("token0 token1 "), response.getAnswer());
+        assertEquals(1, response.getSources().size());
+        assertEquals(1, chatServer.getRequests());
+
+        LlmCacheStats stats = responseCache.getStats();
+        assertEquals(1, stats.getProviderCalls());
+        assertTrue(stats.getProviderPromptTokens() > 0);
+    }
+
+    @Test
+    void cachedAnswerMakesNoProviderCall() throws Exception {
+        String first = ragService.ask(QUESTION).getAnswer();
+        String second = ragService.ask(QUESTION).getAnswer();
+
+        assertEquals(first, second);
+        assertEquals(1, chatServer.getRequests());
+        LlmCacheStats stats = responseCache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getProviderCalls());
+        assertEquals(0.5, stats.getSavedPromptTokenRatio(), 1e-9);
+    }
+}
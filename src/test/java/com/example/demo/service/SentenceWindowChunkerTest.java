@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SentenceWindowChunkerTest {
+
+    @Test
+    void noChunkExceedsChunkSizeOnDenseText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("Doanh thu quý ").append(i % 4 + 1).append(" năm 202").append(i % 10)
+                    .append(" đạt ").append(1_000_000 + i * 7919).append(" triệu đồng, tăng ")
+                    .append(i % 17).append(",").append(i % 9).append("% so với cùng kỳ. ");
+        }
+        // One run-on "sentence" of numbers without punctuation or spaces
+        for (int i = 0; i < 400; i++) {
+            text.append(i * 31 % 997);
+        }
+        text.append("\n\n");
+        // Mixed density in one sentence: the whole-sentence chars/token ratio underestimates the dense tail
+        for (int i = 0; i < 200; i++) {
+            text.append("overview ");
+        }
+        for (int i = 0; i < 200; i++) {
+            text.append(i).append(";").append(i * 7 % 13).append(",").append(i % 5).append("%|");
+        }
+        text.append("\n\n");
+        // One run-on sentence of Vietnamese words without punctuation
+        for (int i = 0; i < 300; i++) {
+            text.append("nghiên cứu ứng dụng trí tuệ nhân tạo trong giáo dục ");
+        }
+
+        for (int chunkSize : new int[]{16, 64, 200}) {
+            SentenceWindowChunker chunker = new SentenceWindowChunker(chunkSize, chunkSize / 4);
+            List<String> chunks = chunker.split(text.toString());
+            assertFalse(chunks.isEmpty());
+            for (String chunk : chunks) {
+                assertTrue(TokenCounter.count(chunk) <= chunkSize,
+                        "chunk of " + TokenCounter.count(chunk) + " tokens > " + chunkSize + ": " + chunk);
+            }
+        }
+    }
+
+    @Test
+    void consecutiveChunksOverlapByTrailingSentences() {
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            sentences.add("Sentence number " + i + " describes one small fact about the report.");
+        }
+        String text = String.join(" ", sentences);
+        int chunkSize = 60;
+        int overlap = 20;
+        SentenceWindowChunker chunker = new SentenceWindowChunker(chunkSize, overlap);
+
+        List<String> chunks = chunker.split(text);
+        assertTrue(chunks.size() > 2);
+        for (int c = 1; c < chunks.size(); c++) {
+            String previous = chunks.get(c - 1);
+            String next = chunks.get(c);
+            String firstOfNext = next.substring(0, next.indexOf('.') + 1);
+            assertTrue(sentences.contains(firstOfNext));
+
+            // The next window starts at a sentence inside the previous one and repeats its tail
+            int from = previous.lastIndexOf(firstOfNext);
+            assertTrue(from > 0, "no overlap between chunk " + (c - 1) + " and " + c);
+            String shared = previous.substring(from);
+            assertTrue(next.startsWith(shared));
+            int sharedTokens = 0;
+            for (String sentence : shared.split("(?<=\\.) ")) {
+                sharedTokens += TokenCounter.count(sentence);
+            }
+            assertTrue(sharedTokens <= overlap, "overlap of " + sharedTokens + " tokens");
+        }
+        assertTrue(chunks.get(chunks.size() - 1).endsWith(sentences.get(sentences.size() - 1)));
+    }
+
+    @Test
+    void everySentenceIsCovered() {
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sentences.add("Mục " + i + " trình bày kết quả khảo sát tại Hà Nội, Huế, v.v. và các tỉnh lân cận.");
+        }
+        List<String> chunks = new SentenceWindowChunker(40, 10).split(String.join(" ", sentences));
+        String joined = String.join("\n", chunks);
+        for (String sentence : sentences) {
+            assertTrue(joined.contains(sentence), "missing: " + sentence);
+        }
+    }
+
+    @Test
+    void prefersClosingAtParagraphBreak() {
+        String first = "Alpha beta gamma delta. Epsilon zeta eta theta. Iota kappa lambda mu.";
+        String second = "Nu xi omicron pi. Rho sigma tau upsilon.";
+        // The window is exactly half full at the paragraph break and the second paragraph would still fit
+        int chunkSize = TokenCounter.count(first) * 2;
+        SentenceWindowChunker chunker = new SentenceWindowChunker(chunkSize, 0);
+
+        assertEquals(List.of(first, second), chunker.split(first + "\n\n" + second));
+        assertEquals(List.of(first + " " + second), chunker.split(first + " " + second));
+    }
+
+    @Test
+    void overlapIsCappedAtHalfChunkSize() {
+        SentenceWindowChunker chunker = new SentenceWindowChunker(100, 90);
+        assertEquals(50, chunker.getOverlap());
+    }
+
+    @Test
+    void rejectsNonPositiveChunkSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SentenceWindowChunker(0, 0));
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.demo.service;
+
+import com.example.demo.controller.ClusterShardController;
+import com.example.demo.model.ShardAddRequest;
+import com.example.demo.model.ShardSearchRequest;
+import com.example.demo.model.TimingBreakdown;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ShardedVectorStore as node 0 of a three-node cluster: nodes 1 and 2 are
+ * ClusterShardController instances served by local HttpServer stubs, which can be
+ * told to answer slowly or to fail their writes.
+ */
+class ShardedVectorStoreTest {
+
+    private static final int NODES = 3;
+    private static final int DIM = 8;
+    private static final long SHARD_TIMEOUT_MS = 500;
+
+    private EmbeddingModelRegistry registry;
+    private InMemoryVectorStore localShard;
+    private final List<StubShardNode> remotes = new ArrayList<>();
+    private ShardedVectorStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        registry = new EmbeddingModelRegistry(null);
+        ReflectionTestUtils.setField(registry, "spec", new EmbeddingModelRegistry.ModelSpec("stub-embedding", DIM, DIM));
+        localShard = new InMemoryVectorStore(null, registry);
+
+        List<String> nodes = new ArrayList<>();
+        nodes.add("http://127.0.0.1:1");     // this node, never called over HTTP
+        for (int i = 1; i < NODES; i++) {
+            StubShardNode remote = new StubShardNode(new InMemoryVectorStore(null, registry), registry);
+            remotes.add(remote);
+            nodes.add(remote.baseUrl());
+        }
+        store = new ShardedVectorStore(localShard, null, registry, 0, nodes, SHARD_TIMEOUT_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        remotes.forEach(StubShardNode::close);
+    }
+
+    @Test
+    void searchMergesTopKAcrossShards() {
+        Random random = new Random(11);
+        List<Document> documents = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            documents.add(document("chunk-" + i, "file-" + (i % 30) + ".pdf"));
+            vectors.add(randomVector(random));
+        }
+        store.addEmbedded(documents, vectors);
+        assertEquals(300, store.size());
+        for (int shard = 0; shard < NODES; shard++) {
+            assertTrue(shard(shard).size() > 0, "shard " + shard + " is empty");
+        }
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            List<Document> hits = store.similaritySearch(query, 10, -1);
+
+            // Expected: the global top 10 over all 300 vectors
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < vectors.size(); i++) {
+                order.add(i);
+            }
+            order.sort(Comparator.comparingDouble((Integer i) -> cosine(query, vectors.get(i))).reversed());
+            List<String> expected = order.subList(0, 10).stream().map(i -> "chunk-" + i).toList();
+
+            assertEquals(expected, hits.stream().map(Document::getId).toList());
+            for (int i = 1; i < hits.size(); i++) {
+                assertTrue(score(hits.get(i - 1)) >= score(hits.get(i)));
+            }
+        }
+        // Hits from remote shards keep their source metadata
+        Document remoteHit = store.similaritySearch(vectors.get(1), 1, -1).get(0);
+        assertEquals("chunk-1", remoteHit.getId());
+        assertEquals(documents.get(1).getMetadata().get(ParallelPdfReader.METADATA_FILE_NAME),
+                remoteHit.getMetadata().get(ParallelPdfReader.METADATA_FILE_NAME));
+    }
+
+    @Test
+    void slowShardIsSkippedAndFlaggedAsPartial() {
+        String slowFile = fileOnShard(2);
+        String fastFile = fileOnShard(1);
+        float[] vector = randomVector(new Random(3));
+        store.addEmbedded(List.of(document("slow", slowFile), document("fast", fastFile), document("local", fileOnShard(0))),
+                List.of(vector, vector, vector));
+
+        remotes.get(1).delayMs = SHARD_TIMEOUT_MS * 4;
+        RequestTimings timings = RequestTimings.begin(System.nanoTime(), true);
+        long start = System.nanoTime();
+        List<Document> hits;
+        try {
+            hits = store.similaritySearch(vector, 10, -1);
+        } finally {
+            timings.finish();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Set<String> ids = new HashSet<>(hits.stream().map(Document::getId).toList());
+        assertEquals(Set.of("fast", "local"), ids);
+        assertTrue(elapsedMs < SHARD_TIMEOUT_MS * 3, "search took " + elapsedMs + "ms");
+        TimingBreakdown breakdown = timings.getBreakdown();
+        assertEquals(2, (int) breakdown.getShardsAnswered());
+        assertEquals(3, (int) breakdown.getShardsTotal());
+        assertTrue(breakdown.isPartialResults());
+
+        // Once the shard is back, the next search is complete again
+        remotes.get(1).delayMs = 0;
+        RequestTimings next = RequestTimings.begin(System.nanoTime(), true);
+        try {
+            assertEquals(3, store.similaritySearch(vector, 10, -1).size());
+        } finally {
+            next.finish();
+        }
+        assertFalse(next.getBreakdown().isPartialResults());
+    }
+
+    @Test
+    void failedWriteIsRolledBackOnShardsThatAcceptedIt() {
+        float[] vector = randomVector(new Random(5));
+        store.addEmbedded(List.of(document("existing", fileOnShard(1))), List.of(vector));
+
+        remotes.get(1).failWrites = true;
+        List<Document> batch = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        for (int shard = 0; shard < NODES; shard++) {
+            for (int i = 0; i < 5; i++) {
+                batch.add(document("batch-" + shard + "-" + i, fileOnShard(shard)));
+                vectors.add(vector);
+            }
+        }
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> store.addEmbedded(batch, vectors));
+        assertTrue(e.getMessage().startsWith("Shard write failed, batch rolled back"), e.getMessage());
+
+        // Shards 0 and 1 accepted their part and lost it again; older rows stay
+        assertEquals(0, shard(0).size());
+        assertEquals(1, shard(1).size());
+        assertEquals("existing", shard(1).similaritySearch(vector, 10, -1).get(0).getId());
+        // The failing shard committed before erroring and was rolled back as well
+        assertEquals(0, shard(2).size());
+        assertTrue(remotes.get(1).deletes > 0);
+
+        // A retry once the shard is healthy adds every chunk exactly once
+        remotes.get(1).failWrites = false;
+        store.addEmbedded(batch, vectors);
+        assertEquals(16, store.size());
+    }
+
+    @Test
+    void placementFollowsTheSourceFile() {
+        List<Document> documents = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        Random random = new Random(7);
+        for (int file = 0; file < 12; file++) {
+            for (int chunk = 0; chunk < 5; chunk++) {
+                documents.add(document("report-" + file + "-" + chunk, "report-" + file + ".pdf"));
+                vectors.add(randomVector(random));
+            }
+        }
+        store.addEmbedded(documents, vectors);
+
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            int expected = Math.floorMod(document.getMetadata().get(ParallelPdfReader.METADATA_FILE_NAME).hashCode(), NODES);
+            assertEquals(expected, store.shardOf(document));
+            // The chunk is stored on that shard and nowhere else
+            for (int shard = 0; shard < NODES; shard++) {
+                boolean found = shard(shard).similaritySearch(vectors.get(i), 1, -1).stream()
+                        .anyMatch(hit -> hit.getId().equals(document.getId()));
+                assertEquals(shard == expected, found, document.getId() + " on shard " + shard);
+            }
+        }
+
+        // Same file, new chunk ids (a reindex): same shard, also from another node's view
+        ShardedVectorStore otherNode = new ShardedVectorStore(shard(1), null, registry, 1, store.getNodes(), SHARD_TIMEOUT_MS);
+        try {
+            for (int file = 0; file < 12; file++) {
+                int shard = store.shardOf(document("report-" + file + "-0", "report-" + file + ".pdf"));
+                assertEquals(shard, store.shardOf(document("new-id-" + file, "report-" + file + ".pdf")));
+                assertEquals(shard, otherNode.shardOf(document("other-" + file, "report-" + file + ".pdf")));
+            }
+        } finally {
+            otherNode.close();
+        }
+
+        // No file name: placed by chunk id
+        Document orphan = new Document("orphan-chunk", "không có file", Map.of());
+        assertEquals(Math.floorMod("orphan-chunk".hashCode(), NODES), store.shardOf(orphan));
+    }
+
+    private InMemoryVectorStore shard(int shard) {
+        return shard == 0 ? localShard : remotes.get(shard - 1).shard;
+    }
+
+    /**
+     * A file name whose chunks are placed on the given shard.
+     */
+    private String fileOnShard(int shard) {
+        for (int i = 0; ; i++) {
+            String file = "placed-" + i + ".pdf";
+            if (Math.floorMod(file.hashCode(), NODES) == shard) {
+                return file;
+            }
+        }
+    }
+
+    private static Document document(String id, String fileName) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(ParallelPdfReader.METADATA_FILE_NAME, fileName);
+        return new Document(id, "Nội dung " + id, metadata);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+
+    private static double score(Document document) {
+        return ((Number) document.getMetadata().get("score")).doubleValue();
+    }
+
+    /**
+     * Remote node: the shard endpoints of ClusterShardController over a JDK HttpServer.
+     */
+    private static final class StubShardNode implements AutoCloseable {
+
+        private static final Object FAILED = new Object();
+
+        private final ObjectMapper mapper = new ObjectMapper();
+        private final InMemoryVectorStore shard;
+        private final ClusterShardController controller;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        volatile long delayMs;
+        volatile boolean failWrites;
+        volatile int deletes;
+
+        StubShardNode(InMemoryVectorStore shard, EmbeddingModelRegistry registry) throws IOException {
+            this.shard = shard;
+            this.controller = new ClusterShardController(shard, registry);
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/cluster/shard", this::handle);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                int status = 200;
+                Object result;
+                try {
+                    result = dispatch(exchange);
+                    if (result == FAILED) {
+                        // Committed, then failed: the caller must roll it back
+                        status = 500;
+                        result = Map.of("error", "disk full");
+                    }
+                } catch (RuntimeException e) {
+                    status = 500;
+                    result = Map.of("error", String.valueOf(e.getMessage()));
+                }
+                byte[] bytes = result == null ? new byte[0] : mapper.writeValueAsBytes(result);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+                if (bytes.length > 0) {
+                    exchange.getResponseBody().write(bytes);
+                }
+            }
+        }
+
+        private Object dispatch(HttpExchange exchange) throws IOException {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String route = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            switch (route) {
+                case "POST /api/cluster/shard/documents" -> {
+                    controller.add(mapper.readValue(body, ShardAddRequest.class));
+                    return failWrites ? FAILED : null;
+                }
+                case "POST /api/cluster/shard/search" -> {
+                    pause();
+                    return controller.search(mapper.readValue(body, ShardSearchRequest.class));
+                }
+                case "POST /api/cluster/shard/delete" -> {
+                    deletes++;
+                    return controller.delete(mapper.readValue(body, new TypeReference<List<String>>() { }));
+                }
+                case "GET /api/cluster/shard/size" -> {
+                    return controller.size();
+                }
+                case "DELETE /api/cluster/shard" -> {
+                    controller.clear();
+                    return null;
+                }
+                default -> throw new IllegalArgumentException("No stub route for " + route);
+            }
+        }
+
+        private void pause() {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
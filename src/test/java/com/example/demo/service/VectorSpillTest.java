@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorSpillTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mirrorsSlotsInEveryStorage() {
+        for (ChunkPayloadStore.Storage storage : ChunkPayloadStore.Storage.values()) {
+            try (VectorSpill spill = new VectorSpill(storage, directory)) {
+                Random random = new Random(1);
+                List<float[]> expected = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    float[] vector = vector(random, 24);
+                    expected.add(vector);
+                    spill.add(vector);
+                }
+                float[] replacement = vector(random, 24);
+                spill.set(10, replacement);
+                expected.set(10, replacement);
+                // Swap-remove, as the index does: the last row moves into the freed slot
+                spill.swapRemove(3);
+                expected.set(3, expected.remove(expected.size() - 1));
+                spill.swapRemove(spill.size() - 1);
+                expected.remove(expected.size() - 1);
+
+                assertEquals(expected.size(), spill.size(), storage.name());
+                assertEquals(998L * 24 * Float.BYTES, spill.bytes(), storage.name());
+                for (int slot = 0; slot < expected.size(); slot++) {
+                    assertArrayEquals(expected.get(slot), spill.get(slot), storage.name() + " slot " + slot);
+                }
+                assertThrows(IndexOutOfBoundsException.class, () -> spill.get(998));
+                assertThrows(IllegalArgumentException.class, () -> spill.add(new float[8]));
+
+                // After clear the spill binds to the next dimension
+                spill.clear();
+                assertEquals(0, spill.size());
+                float[] small = vector(random, 8);
+                spill.add(small);
+                assertArrayEquals(small, spill.get(0), storage.name());
+            }
+        }
+    }
+
+    @Test
+    void copyIsIndependentInEveryStorage() {
+        for (ChunkPayloadStore.Storage storage : ChunkPayloadStore.Storage.values()) {
+            try (VectorSpill spill = new VectorSpill(storage, directory)) {
+                Random random = new Random(2);
+                List<float[]> expected = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    expected.add(vector(random, 16));
+                    spill.add(expected.get(i));
+                }
+                try (VectorSpill copy = spill.copy()) {
+                    spill.set(0, vector(random, 16));
+                    spill.swapRemove(1);
+                    spill.clear();
+
+                    assertEquals(500, copy.size(), storage.name());
+                    for (int slot = 0; slot < expected.size(); slot++) {
+                        assertArrayEquals(expected.get(slot), copy.get(slot), storage.name() + " slot " + slot);
+                    }
+                }
+            }
+        }
+    }
+
+    private static float[] vector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}